@@ -1,38 +1,43 @@
 package ru.yandex.practicum.filmorate;
 
 public class Constants {
+    // PAGING
+    // наибольший размер страницы в списках с курсором и заголовок, в котором возвращается курсор следующей
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     // REVIEWS
     public static final String GET_REVIEWS = "SELECT * FROM reviews ORDER BY useful ASC";
 
     public static final String GET_REVIEW_BY_ID = "SELECT * FROM reviews WHERE review_id = ?";
 
-    public static final String GET_REVIEW_COUNT_ID = "SELECT COUNT(*) FROM reviews WHERE review_id = ?";
-
-    public static final String GET_REVIEWS_BY_FILM_ID = "SELECT * FROM reviews";
-
-    public static final String CREATE_REVIEW = "INSERT INTO reviews SET user_id = ?, film_id = ?, content = ?, is_positive = ?, useful = ?";
+    // страницы отзывов по убыванию useful, курсор - (useful, review_id) последнего отзыва предыдущей страницы
+    public static final String GET_REVIEWS_PAGE = "SELECT * FROM reviews ORDER BY useful DESC, review_id LIMIT ?";
 
-    public static final String UPDATE_REVIEW = "UPDATE reviews SET content = ?, is_positive = ?, useful = ? WHERE review_id = ?";
+    public static final String GET_REVIEWS_PAGE_AFTER = "SELECT * FROM reviews WHERE useful <= ? AND (useful < ? OR review_id > ?) ORDER BY useful DESC, review_id LIMIT ?";
 
-    public static final String GET_LAST_REVIEW = "SELECT * FROM reviews ORDER BY review_id DESC LIMIT 1";
+    public static final String GET_FILM_REVIEWS_PAGE = "SELECT * FROM reviews WHERE film_id = ? ORDER BY useful DESC, review_id LIMIT ?";
 
-    public static final String GET_LAST_REVIEW_AFTER_UPDATE = "SELECT * FROM reviews WHERE review_id = ?";
+    public static final String GET_FILM_REVIEWS_PAGE_AFTER = "SELECT * FROM reviews WHERE film_id = ? AND useful <= ? AND (useful < ? OR review_id > ?) ORDER BY useful DESC, review_id LIMIT ?";
 
-    public static final String GET_REVIEWS_BY_ID = "SELECT * FROM reviews WHERE review_id = ?";
+    public static final String CREATE_REVIEW = "INSERT INTO reviews SET user_id = ?, film_id = ?, content = ?, is_positive = ?, useful = ?";
 
-    public static final String INSERT_LIKE_TO_REVIEW = "INSERT INTO review_like (review_id, user_id) VALUES (?, ?)";
+    // FINAL TABLE и OLD TABLE возвращают измененную строку тем же запросом, без повторного чтения
+    public static final String UPDATE_REVIEW = "SELECT * FROM FINAL TABLE (UPDATE reviews SET content = ?, is_positive = ? WHERE review_id = ?)";
 
-    public static final String INSERT_DISLIKE_TO_REVIEW = "INSERT INTO review_dislike (review_id, user_id) VALUES (?, ?)";
+    public static final String DELETE_REVIEW = "SELECT * FROM OLD TABLE (DELETE FROM reviews WHERE review_id = ?)";
 
-    public static final String DELETE_DISLIKE_FROM_REVIEW = "DELETE FROM review_dislike WHERE review_id = ? AND user_id = ?";
+    public static final String GET_REVIEWS_BY_ID = "SELECT * FROM reviews WHERE review_id = ?";
 
-    public static final String DELETE_LIKE_FROM_REVIEW = "DELETE FROM review_like WHERE review_id = ? AND user_id = ?";
+    // сдвиг useful на разницу между новым и прежним голосом: блокирует строку отзыва и возвращает
+    // ее новое состояние, пустой результат означает, что отзыва нет
+    public static final String VOTE_REVIEW = "SELECT * FROM FINAL TABLE (UPDATE reviews SET useful = useful + ? - COALESCE((SELECT vote FROM review_votes WHERE review_id = ? AND user_id = ?), 0) WHERE review_id = ?)";
 
-    public static final String GET_FILM_BY_ID = "SELECT COUNT(*) FROM films WHERE id = ?";
+    public static final String UNVOTE_REVIEW = "SELECT * FROM FINAL TABLE (UPDATE reviews SET useful = useful - COALESCE((SELECT vote FROM review_votes WHERE review_id = ? AND user_id = ? AND vote = ?), 0) WHERE review_id = ?)";
 
-    public static final String GET_USER_BY_ID = "SELECT COUNT(*) FROM users WHERE id = ?";
+    public static final String MERGE_REVIEW_VOTE = "MERGE INTO review_votes (review_id, user_id, vote) KEY (review_id, user_id) VALUES (?, ?, ?)";
 
-    public static final String UPDATE_REVIEW_AFTER_ADD_DISLIKE = "UPDATE reviews r1 SET useful = -1 WHERE review_id = ?";
+    public static final String DELETE_REVIEW_VOTE = "DELETE FROM review_votes WHERE review_id = ? AND user_id = ? AND vote = ?";
 
-    public static final String UPDATE_REVIEW_AFTER_ADD_LIKE = "UPDATE reviews r1 SET useful = ((SELECT r2.useful FROM reviews r2 WHERE r1.review_id = r2.review_id) + 1) WHERE review_id = ?";
 }
@@ -3,12 +3,20 @@ package ru.yandex.practicum.filmorate.controllers;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.Constants;
 import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
 import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.services.BulkImporter;
 import ru.yandex.practicum.filmorate.services.FilmService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.time.*;
 import java.util.List;
 
@@ -16,18 +24,63 @@ import java.util.List;
 @Slf4j
 @RequestMapping("/films")
 public class FilmController {
+
     @Getter
     FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
+    private final boolean unpagedListingEnabled;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, NdjsonWriter ndjsonWriter,
+                          @Value("${filmorate.admin.unpaged-listing:false}") boolean unpagedListingEnabled) {
         this.filmService = filmService;
+        this.ndjsonWriter = ndjsonWriter;
+        this.unpagedListingEnabled = unpagedListingEnabled;
     }
 
+    /**
+     * Страница фильмов с id больше after. Если за страницей есть еще фильмы, в заголовке X-Next-Cursor
+     * возвращается значение after для следующего запроса. Полный список (all=true) отдается только
+     * при включенном filmorate.admin.unpaged-listing.
+     */
     @GetMapping
-    public List<Film> getFilms() {
-        log.info("Запрос списка фильмов из базы");
-        return filmService.getFilms();
+    public ResponseEntity<List<Film>> getFilms(
+            @RequestParam(value = "after", defaultValue = "0", required = false) Integer after,
+            @RequestParam(value = "limit", defaultValue = "100", required = false) Integer limit,
+            @RequestParam(value = "all", defaultValue = "false", required = false) boolean all) {
+        if (all) {
+            if (!unpagedListingEnabled) {
+                log.info("Запрос полного списка фильмов отклонен: выгрузка без пагинации выключена");
+                throw new IncorrectParameterException("all");
+            }
+            log.info("Запрос полного списка фильмов из базы");
+            return ResponseEntity.ok(filmService.getFilms());
+        }
+
+        log.info("Запрос страницы фильмов после id: {} размером: {}", after, limit);
+        if (after < 0) {
+            throw new IncorrectParameterException("after");
+        }
+        if (limit < 1 || limit > Constants.MAX_PAGE_SIZE) {
+            log.info("Неверный параметр limit: {}, limit должен быть от 1 до {}", limit, Constants.MAX_PAGE_SIZE);
+            throw new IncorrectParameterException("limit");
+        }
+
+        List<Film> films = filmService.getFilms(after, limit + 1);
+        if (films.size() <= limit) {
+            return ResponseEntity.ok(films);
+        }
+        List<Film> page = films.subList(0, limit);
+        return ResponseEntity.ok()
+                .header(Constants.NEXT_CURSOR_HEADER, String.valueOf(page.get(limit - 1).getId()))
+                .body(page);
+    }
+
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public void exportFilms(HttpServletResponse response) throws IOException {
+        log.info("Запрос потоковой выгрузки всех фильмов");
+        long count = ndjsonWriter.write(response, filmService::exportFilms);
+        log.info("Выгружено фильмов: {}", count);
     }
 
     @GetMapping("/{id}")
@@ -42,6 +95,17 @@ public class FilmController {
         return filmService.addFilm(film);
     }
 
+    @PostMapping(value = "/bulk", consumes = NdjsonWriter.MEDIA_TYPE)
+    public BulkImportResult importFilms(HttpServletRequest request,
+                                        @RequestParam(value = "chunkSize", required = false) Integer chunkSize)
+            throws IOException {
+        log.info("Запрос пакетного импорта фильмов, размер пачки: {}", chunkSize);
+        if (chunkSize != null && (chunkSize < 1 || chunkSize > BulkImporter.MAX_CHUNK_SIZE)) {
+            throw new IncorrectParameterException("chunkSize");
+        }
+        return filmService.importFilms(request.getInputStream(), chunkSize);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
         log.info("Запрос обновления фильма c id: {} в базе", film.getId());
@@ -104,9 +168,19 @@ public class FilmController {
 
     @GetMapping("/common")
     public List<Film> getCommonFilms(@RequestParam(value = "userId") int userId, @RequestParam(value = "friendId")
-        int friendId){
+        int friendId, @RequestParam(value = "count", defaultValue = "10", required = false) Integer count){
         log.info("Запрос списка общих фильмов пользователей с id: {} и {} ", userId, friendId);
-        return filmService.findCommon(userId, friendId);
+
+        if (count < 1) {
+            log.info("Неверный параметр count: {}, count должен быть больше 0 ", count);
+            throw new IncorrectParameterException("count");
+        }
+        if (userId == friendId) {
+            log.info("Неверный параметр friendId: {}, пользователь совпадает с userId", friendId);
+            throw new IncorrectParameterException("friendId");
+        }
+
+        return filmService.findCommon(userId, friendId, count);
     }
 
     @GetMapping("/search")
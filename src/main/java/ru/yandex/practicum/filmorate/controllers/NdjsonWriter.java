@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Пишет выгрузку в ответ построчно в формате NDJSON: каждый объект сериализуется сразу
+ * после чтения из базы, весь список в памяти не собирается.
+ */
+@Component
+public class NdjsonWriter {
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private final ObjectWriter objectWriter;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectWriter = objectMapper.writer();
+    }
+
+    /**
+     * Передает producer-у потребителя, который пишет каждый объект отдельной строкой.
+     * Возвращает число записанных строк.
+     */
+    public <T> long write(HttpServletResponse response, Consumer<Consumer<T>> producer) throws IOException {
+        response.setContentType(MEDIA_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream outputStream = response.getOutputStream();
+
+        long[] written = {0};
+        try {
+            producer.accept(value -> {
+                try {
+                    outputStream.write(objectWriter.writeValueAsBytes(value));
+                    outputStream.write('\n');
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        outputStream.flush();
+        return written[0];
+    }
+}
@@ -2,13 +2,15 @@ package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.Constants;
+import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.models.Review;
 import ru.yandex.practicum.filmorate.services.ReviewService;
 
 import javax.validation.Valid;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @RestController
@@ -16,10 +18,43 @@ import java.util.Map;
 public class ReviewController {
     private final ReviewService reviewService;
 
+    /**
+     * Отзывы по убыванию полезности. Если есть следующая страница, в заголовке X-Next-Cursor
+     * возвращается значение after для следующего запроса в виде useful:reviewId.
+     */
     @GetMapping(value = "/reviews")
-    public List<Review> getReviewsByParams(@RequestParam(required = false) Map<String, Integer> params) {
-        log.info("Endpoint request received: 'GET .reviews with params: {}'", params.toString());
-        return reviewService.findReviewsByParams(params);
+    public ResponseEntity<List<Review>> getReviewsByParams(
+            @RequestParam(value = "filmId", required = false) Integer filmId,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count,
+            @RequestParam(value = "after", required = false) String after) {
+        log.info("Endpoint request received: 'GET reviews?filmId={}&count={}&after={}'", filmId, count, after);
+        if (count < 1 || count > Constants.MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("count");
+        }
+        Long afterUseful = null;
+        Long afterId = null;
+        if (after != null) {
+            String[] cursor = after.split(":");
+            if (cursor.length != 2) {
+                throw new IncorrectParameterException("after");
+            }
+            try {
+                afterUseful = Long.parseLong(cursor[0]);
+                afterId = Long.parseLong(cursor[1]);
+            } catch (NumberFormatException e) {
+                throw new IncorrectParameterException("after");
+            }
+        }
+
+        List<Review> reviews = reviewService.findReviewsByParams(filmId, afterUseful, afterId, count + 1);
+        if (reviews.size() <= count) {
+            return ResponseEntity.ok(reviews);
+        }
+        List<Review> page = reviews.subList(0, count);
+        Review last = page.get(count - 1);
+        return ResponseEntity.ok()
+                .header(Constants.NEXT_CURSOR_HEADER, last.getUseful() + ":" + last.getReviewId())
+                .body(page);
     }
 
     @PostMapping(value = "/reviews")
@@ -52,6 +87,18 @@ public class ReviewController {
         reviewService.addDisLikeToReview(reviewId, userId);
     }
 
+    @DeleteMapping(value = "reviews/{reviewId}/like/{userId}")
+    public void removeLikeFromReview(@PathVariable Integer reviewId, @PathVariable Integer userId) {
+        log.info("Endpoint request received: 'DELETE reviews/{}/like/{}'", reviewId, userId);
+        reviewService.removeLikeFromReview(reviewId, userId);
+    }
+
+    @DeleteMapping(value = "reviews/{reviewId}/dislike/{userId}")
+    public void removeDisLikeFromReview(@PathVariable Integer reviewId, @PathVariable Integer userId) {
+        log.info("Endpoint request received: 'DELETE reviews/{}/dislike/{}'", reviewId, userId);
+        reviewService.removeDisLikeFromReview(reviewId, userId);
+    }
+
     @DeleteMapping(value = "reviews/{reviewId}")
     public void removeReview(@PathVariable Long reviewId) {
         log.info("Endpoint request received: 'DELETE reviews/{}'", reviewId);
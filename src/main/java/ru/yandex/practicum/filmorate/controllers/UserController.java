@@ -2,13 +2,22 @@ package ru.yandex.practicum.filmorate.controllers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.Constants;
+import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
 import ru.yandex.practicum.filmorate.models.Event;
 import ru.yandex.practicum.filmorate.models.Film;
 import ru.yandex.practicum.filmorate.models.User;
+import ru.yandex.practicum.filmorate.services.BulkImporter;
 import ru.yandex.practicum.filmorate.services.UserService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
@@ -18,9 +27,20 @@ import java.util.Set;
 @RequestMapping("/users")
 public class UserController {
     UserService userService;
+    private final NdjsonWriter ndjsonWriter;
+    private final boolean unpagedListingEnabled;
     @Autowired
-    public UserController(UserService userService){
+    public UserController(UserService userService, NdjsonWriter ndjsonWriter,
+                          @Value("${filmorate.admin.unpaged-listing:false}") boolean unpagedListingEnabled){
         this.userService = userService;
+        this.ndjsonWriter = ndjsonWriter;
+        this.unpagedListingEnabled = unpagedListingEnabled;
+    }
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        log.info("Запрос потоковой выгрузки всех пользователей");
+        long count = ndjsonWriter.write(response, userService::exportUsers);
+        log.info("Выгружено пользователей: {}", count);
     }
     @GetMapping("/{id}")
     public User getUser(@PathVariable("id") Integer userId){
@@ -32,10 +52,47 @@ public class UserController {
         log.info("Запрос добавления пользователя c логином: {} в базу", user.getLogin());
         return userService.addUser(user);
     }
+    @PostMapping(value = "/bulk", consumes = NdjsonWriter.MEDIA_TYPE)
+    public BulkImportResult importUsers(HttpServletRequest request,
+                                        @RequestParam(value = "chunkSize", required = false) Integer chunkSize)
+            throws IOException {
+        log.info("Запрос пакетного импорта пользователей, размер пачки: {}", chunkSize);
+        if (chunkSize != null && (chunkSize < 1 || chunkSize > BulkImporter.MAX_CHUNK_SIZE)) {
+            throw new IncorrectParameterException("chunkSize");
+        }
+        return userService.importUsers(request.getInputStream(), chunkSize);
+    }
     @GetMapping
-    public List<User> getUsers(){
-        log.info("Запрос списка всех пользователей из базы");
-        return userService.getUsers();
+    public ResponseEntity<List<User>> getUsers(
+            @RequestParam(value = "after", defaultValue = "0", required = false) Integer after,
+            @RequestParam(value = "limit", defaultValue = "100", required = false) Integer limit,
+            @RequestParam(value = "all", defaultValue = "false", required = false) boolean all){
+        if (all) {
+            if (!unpagedListingEnabled) {
+                log.info("Запрос полного списка пользователей отклонен: выгрузка без пагинации выключена");
+                throw new IncorrectParameterException("all");
+            }
+            log.info("Запрос списка всех пользователей из базы");
+            return ResponseEntity.ok(userService.getUsers());
+        }
+
+        log.info("Запрос страницы пользователей после id: {} размером: {}", after, limit);
+        if (after < 0) {
+            throw new IncorrectParameterException("after");
+        }
+        if (limit < 1 || limit > Constants.MAX_PAGE_SIZE) {
+            log.info("Неверный параметр limit: {}, limit должен быть от 1 до {}", limit, Constants.MAX_PAGE_SIZE);
+            throw new IncorrectParameterException("limit");
+        }
+
+        List<User> users = userService.getUsers(after, limit + 1);
+        if (users.size() <= limit) {
+            return ResponseEntity.ok(users);
+        }
+        List<User> page = users.subList(0, limit);
+        return ResponseEntity.ok()
+                .header(Constants.NEXT_CURSOR_HEADER, String.valueOf(page.get(limit - 1).getId()))
+                .body(page);
     }
     @PutMapping
     public User updateUser(@Valid @RequestBody User user){
@@ -63,22 +120,62 @@ public class UserController {
         return userService.getCommonFriends(userId, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> suggestFriends(
+            @PathVariable("id") Integer userId,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count) {
+        log.info("Запрос рекомендаций друзей для пользователя с id: {}", userId);
+        if (count < 1 || count > Constants.MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("count");
+        }
+        return userService.suggestFriends(userId, count);
+    }
+
     @GetMapping("/{id}/friends")
     public Set<User> getFriends(@PathVariable("id") Integer userId){
         log.info("Запрос получения друзей пользователя с id: {} ",userId);
         return userService.getFriendsById(userId);
     }
 
+    /**
+     * Последние limit событий пользователя (или его друзей при friends=true) с event_id меньше before,
+     * в порядке возрастания event_id. Если есть более ранние события, в заголовке X-Next-Cursor
+     * возвращается значение before для следующего запроса.
+     */
     @GetMapping(value = "/{id}/feed")
-    public List<Event> getFeedByUserId(@PathVariable Integer id) {
-        log.info("Запрос ленты событий пользователя с id: {}", id);
-        return userService.getFeedByUserId(id);
+    public ResponseEntity<List<Event>> getFeedByUserId(
+            @PathVariable Integer id,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "limit", defaultValue = "100", required = false) Integer limit,
+            @RequestParam(value = "friends", defaultValue = "false", required = false) boolean friends) {
+        log.info("Запрос ленты событий пользователя с id: {} до события: {} размером: {}", id, before, limit);
+        if (before != null && before < 1) {
+            throw new IncorrectParameterException("before");
+        }
+        if (limit < 1 || limit > Constants.MAX_PAGE_SIZE) {
+            log.info("Неверный параметр limit: {}, limit должен быть от 1 до {}", limit, Constants.MAX_PAGE_SIZE);
+            throw new IncorrectParameterException("limit");
+        }
+
+        List<Event> events = userService.getFeedByUserId(id, before, limit + 1, friends);
+        if (events.size() <= limit) {
+            return ResponseEntity.ok(events);
+        }
+        List<Event> page = events.subList(1, events.size());
+        return ResponseEntity.ok()
+                .header(Constants.NEXT_CURSOR_HEADER, String.valueOf(page.get(0).getEventId()))
+                .body(page);
     }
 
     @GetMapping("/{id}/recommendations")
-    public List<Film> getRecommendations(@PathVariable Integer id) {
+    public List<Film> getRecommendations(
+            @PathVariable Integer id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count) {
         log.info("Запрос рекомендаций для пользователя с id = " + id);
-        return userService.getRecommendations(id);
+        if (count < 1 || count > Constants.MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("count");
+        }
+        return userService.getRecommendations(id, count);
 
     }
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkImportResult {
+    private int total;
+    private int imported;
+    private int failed;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int line;
+        private String message;
+    }
+}
@@ -25,6 +25,7 @@ public class User {
 
     private String name;
 
+    @NotNull(message = "Неверные данные: не указан день рождения")
     @Past(message = "Неверные данные: День рождения не может быть в будущем")
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     private LocalDate birthday;
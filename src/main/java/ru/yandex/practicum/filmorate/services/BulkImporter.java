@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт NDJSON: каждая строка разбирается и проверяется bean-валидацией, корректные строки
+ * пишутся пачками через chunkWriter. Если пачка не записалась, ее строки повторяются по одной,
+ * чтобы вернуть ошибку для конкретной строки, а остальные все же сохранить.
+ */
+@Component
+@Slf4j
+public class BulkImporter {
+    public static final int MAX_CHUNK_SIZE = 10_000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int defaultChunkSize;
+
+    public BulkImporter(ObjectMapper objectMapper, Validator validator,
+                        @Value("${filmorate.bulk.chunk-size:1000}") int defaultChunkSize) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.defaultChunkSize = defaultChunkSize;
+    }
+
+    public <T> BulkImportResult importNdjson(InputStream inputStream, Class<T> type, Integer chunkSize,
+                                             Consumer<List<T>> chunkWriter) throws IOException {
+        Import<T> currentImport = new Import<>(chunkSize == null ? defaultChunkSize : chunkSize, chunkWriter);
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                currentImport.total++;
+                T value = parseAndValidate(line, lineNumber, type, currentImport);
+                if (value != null) {
+                    currentImport.add(value, lineNumber);
+                }
+            }
+        }
+        currentImport.flush();
+        currentImport.errors.sort(Comparator.comparingInt(BulkImportResult.RowError::getLine));
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        double rowsPerSecond = currentImport.imported * 1000.0 / Math.max(elapsedMillis, 1);
+        log.info("Импорт {}: строк {}, сохранено {}, ошибок {}, {} мс", type.getSimpleName(), currentImport.total,
+                currentImport.imported, currentImport.failed, elapsedMillis);
+
+        return BulkImportResult.builder()
+                .total(currentImport.total)
+                .imported(currentImport.imported)
+                .failed(currentImport.failed)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(rowsPerSecond)
+                .errors(currentImport.errors)
+                .build();
+    }
+
+    private <T> T parseAndValidate(String line, int lineNumber, Class<T> type, Import<T> currentImport) {
+        T value;
+        try {
+            value = objectMapper.readValue(line, type);
+        } catch (JsonProcessingException e) {
+            currentImport.fail(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+            return null;
+        }
+
+        Set<ConstraintViolation<T>> violations;
+        try {
+            violations = validator.validate(value);
+        } catch (RuntimeException e) {
+            currentImport.fail(lineNumber, "Неверные данные: " + e.getMessage());
+            return null;
+        }
+        if (!violations.isEmpty()) {
+            currentImport.fail(lineNumber, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return value;
+    }
+
+    private static String describe(RuntimeException e) {
+        if (e instanceof NestedRuntimeException) {
+            return ((NestedRuntimeException) e).getMostSpecificCause().getMessage();
+        }
+        return e.getMessage();
+    }
+
+    private static class Import<T> {
+        private final int chunkSize;
+        private final Consumer<List<T>> chunkWriter;
+        private final List<T> chunk = new ArrayList<>();
+        private final List<Integer> chunkLines = new ArrayList<>();
+        private final List<BulkImportResult.RowError> errors = new ArrayList<>();
+        private int total;
+        private int imported;
+        private int failed;
+
+        private Import(int chunkSize, Consumer<List<T>> chunkWriter) {
+            this.chunkSize = chunkSize;
+            this.chunkWriter = chunkWriter;
+        }
+
+        private void add(T value, int lineNumber) {
+            chunk.add(value);
+            chunkLines.add(lineNumber);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                chunkWriter.accept(new ArrayList<>(chunk));
+                imported += chunk.size();
+            } catch (RuntimeException e) {
+                log.info("Пачка из {} строк не записана, повтор по одной: {}", chunk.size(), describe(e));
+                for (int i = 0; i < chunk.size(); i++) {
+                    try {
+                        chunkWriter.accept(List.of(chunk.get(i)));
+                        imported++;
+                    } catch (RuntimeException rowException) {
+                        fail(chunkLines.get(i), describe(rowException));
+                    }
+                }
+            }
+            chunk.clear();
+            chunkLines.clear();
+        }
+
+        private void fail(int lineNumber, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BulkImportResult.RowError(lineNumber, message));
+            }
+        }
+    }
+}
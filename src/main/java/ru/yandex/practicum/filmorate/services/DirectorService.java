@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -7,6 +8,7 @@ import ru.yandex.practicum.filmorate.models.Director;
 import ru.yandex.practicum.filmorate.models.Film;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoDirectorStorage;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 
 @Service
@@ -14,30 +16,43 @@ import java.util.List;
 public class DirectorService {
 
     private final DaoDirectorStorage daoDirectorStorage;
+    private final ReferenceCache<Director> directorCache;
 
     @Autowired
-    public DirectorService(DaoDirectorStorage daoDirectorStorage){
+    public DirectorService(DaoDirectorStorage daoDirectorStorage, MeterRegistry meterRegistry){
         this.daoDirectorStorage = daoDirectorStorage;
+        this.directorCache = new ReferenceCache<>("directors", daoDirectorStorage::getAllDirector,
+                Director::getId, meterRegistry);
+    }
+
+    @PostConstruct
+    public void warmUpCache() {
+        directorCache.refresh();
     }
 
     public List<Director> getAllDirector() {
-        return daoDirectorStorage.getAllDirector();
+        return directorCache.getAll();
     }
 
     public Director getDirectorById(Integer id) {
-        return daoDirectorStorage.getDirectorById(id);
+        return directorCache.get(id, daoDirectorStorage::getDirectorById);
     }
 
     public Director addDirector(Director director) {
-        return daoDirectorStorage.addDirector(director);
+        Director added = daoDirectorStorage.addDirector(director);
+        directorCache.refresh();
+        return added;
     }
 
     public Director updateDirector(Director director) {
-        return daoDirectorStorage.updateDirector(director);
+        Director updated = daoDirectorStorage.updateDirector(director);
+        directorCache.refresh();
+        return updated;
     }
 
     public void removeDirector(Integer id) {
         daoDirectorStorage.removeDirector(id);
+        directorCache.refresh();
     }
 
     public List<Director> getDirectorsByIdFilm(int id) {
@@ -47,4 +62,8 @@ public class DirectorService {
     public void addOrUpdateFilmDirectors(Film film) {
         daoDirectorStorage.addOrUpdateFilmDirectors(film);
     }
+
+    public ReferenceCache<Director> getDirectorCache() {
+        return directorCache;
+    }
 }
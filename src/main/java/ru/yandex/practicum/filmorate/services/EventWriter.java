@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.Event;
+import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронная запись ленты событий. Сервисы кладут событие в ограниченную неблокирующую очередь,
+ * фоновый поток пишет накопленное пачкой через batchUpdate по достижении batch-size или раз в
+ * flush-interval-ms. Если очередь заполнена, вызывающий поток ждет до backpressure-timeout-ms,
+ * а затем пишет событие сам. Перед чтением ленты и при остановке очередь сбрасывается в базу.
+ * Записанные события раскладываются по лентам друзей в FriendTimelineCache.
+ */
+@Component
+@Slf4j
+public class EventWriter {
+    private final EventStorage eventStorage;
+    private final FriendTimelineCache friendTimelineCache;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long backpressureTimeoutNanos;
+
+    private final Queue<Map<String, Object>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter backpressureCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public EventWriter(EventStorage eventStorage, FriendTimelineCache friendTimelineCache, MeterRegistry meterRegistry,
+                       @Value("${filmorate.events.queue-capacity:10000}") int capacity,
+                       @Value("${filmorate.events.batch-size:500}") int batchSize,
+                       @Value("${filmorate.events.flush-interval-ms:50}") long flushIntervalMs,
+                       @Value("${filmorate.events.backpressure-timeout-ms:100}") long backpressureTimeoutMs) {
+        this.eventStorage = eventStorage;
+        this.friendTimelineCache = friendTimelineCache;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.backpressureTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+
+        Gauge.builder("filmorate.events.queue.depth", size, AtomicInteger::get)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("filmorate.events.flush")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("filmorate.events.written")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("filmorate.events.failed")
+                .register(meterRegistry);
+        this.backpressureCounter = Counter.builder("filmorate.events.backpressure")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runWriter, "event-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) * 10 + 1000);
+        flush();
+        log.info("Запись событий остановлена, очередь сброшена в базу");
+    }
+
+    public void submit(Map<String, Object> event) {
+        long deadline = System.nanoTime() + backpressureTimeoutNanos;
+        while (!tryReserve()) {
+            LockSupport.unpark(writerThread);
+            if (System.nanoTime() >= deadline) {
+                backpressureCounter.increment();
+                log.warn("Очередь событий заполнена ({}), событие пишется синхронно", capacity);
+                flushLock.lock();
+                try {
+                    flush();
+                    write(List.of(event));
+                } finally {
+                    flushLock.unlock();
+                }
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        queue.add(event);
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Синхронно записывает все, что уже стоит в очереди. Вызывается перед чтением ленты,
+     * чтобы пользователь видел свои только что сделанные действия.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+            Map<String, Object> event;
+            while ((event = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(event);
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        return size.get();
+    }
+
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (size.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Ошибка фоновой записи событий", e);
+            }
+        }
+    }
+
+    private void write(List<Map<String, Object>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Event> written = new ArrayList<>(batch.size());
+        try {
+            written.addAll(eventStorage.saveAll(batch));
+        } catch (RuntimeException e) {
+            log.warn("Пачка из {} событий не записана, повтор по одному: {}", batch.size(), e.getMessage());
+            for (Map<String, Object> event : batch) {
+                try {
+                    written.addAll(eventStorage.saveAll(List.of(event)));
+                } catch (RuntimeException eventException) {
+                    failedCounter.increment();
+                    log.error("Событие {} не записано: {}", event, eventException.getMessage());
+                }
+            }
+        } finally {
+            writtenCounter.increment(written.size());
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            friendTimelineCache.publish(written);
+        } catch (RuntimeException e) {
+            log.error("События не разложены по лентам друзей, ленты сброшены", e);
+            friendTimelineCache.clear();
+        }
+    }
+}
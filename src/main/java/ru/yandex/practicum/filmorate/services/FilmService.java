@@ -2,7 +2,10 @@ package ru.yandex.practicum.filmorate.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
 import ru.yandex.practicum.filmorate.models.Film;
 
 import lombok.extern.slf4j.Slf4j;
@@ -10,8 +13,11 @@ import ru.yandex.practicum.filmorate.models.User;
 import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
 import ru.yandex.practicum.filmorate.storage.interf.FilmStorage;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Year;
 import java.util.*;
+import java.util.function.Consumer;
 
 
 @Service
@@ -24,22 +30,53 @@ public class FilmService {
 
     private final EventStorage eventStorage;
 
+    private final EventWriter eventWriter;
+
+    private final PopularityIndex popularityIndex;
+
+    private final Recommender recommender;
+
+    private final HotReviewCache hotReviewCache;
+
+    private final BulkImporter bulkImporter;
+
     public List<Film> getFilms(){
         return filmStorage.getFilms();
     }
+
+    public List<Film> getFilms(int afterId, int limit) {
+        return filmStorage.getFilms(afterId, limit);
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        filmStorage.exportFilms(consumer);
+    }
     public Film getFilmById(Integer filmId) {
         return filmStorage.getFilmById(filmId);
     }
 
     public Film addFilm(Film film){
-        return filmStorage.addFilm(film);
+        Film addedFilm = filmStorage.addFilm(film);
+        popularityIndex.put(addedFilm);
+        return addedFilm;
+    }
+
+    public BulkImportResult importFilms(InputStream inputStream, Integer chunkSize) throws IOException {
+        return bulkImporter.importNdjson(inputStream, Film.class, chunkSize,
+                chunk -> filmStorage.addFilms(chunk).forEach(popularityIndex::put));
     }
 
     public Film updateFilm(Film film){
-        return filmStorage.updateFilm(film);
+        Film updatedFilm = filmStorage.updateFilm(film);
+        popularityIndex.put(updatedFilm);
+        return updatedFilm;
     }
     public void removeFilm(Integer id){
-        filmStorage.removeFilm(id);
+        List<Integer> likedUserIds = filmStorage.removeFilm(id);
+        popularityIndex.remove(id);
+        recommender.removeFilm(id, likedUserIds);
+        //отзывы фильма удалены каскадно
+        hotReviewCache.removeFilm(id);
     }
     public Film addLikeFromUserById(Integer filmId, Integer userId){
         Film film = filmStorage.getFilmById(filmId);
@@ -51,9 +88,13 @@ public class FilmService {
                 "like",
                 "add"
         );
-        eventStorage.save(params);
+        eventWriter.submit(params);
 
-        return filmStorage.addLikeFromUserById(film.getId(), user.getId());
+        if (filmStorage.addLikeFromUserById(film.getId(), user.getId())) {
+            popularityIndex.onLike(film.getId());
+        }
+        recommender.onLike(user.getId(), film.getId());
+        return filmStorage.getFilmById(film.getId());
     }
     public Film removeLikeFromUserById(Integer filmId, Integer userId){
         Film film = filmStorage.getFilmById(filmId);
@@ -65,12 +106,42 @@ public class FilmService {
                 "like",
                 "remove"
         );
-        eventStorage.save(params);
+        eventWriter.submit(params);
 
-        return filmStorage.removeLikeFromUserById(film.getId(), user.getId());
+        if (filmStorage.removeLikeFromUserById(film.getId(), user.getId())) {
+            popularityIndex.onUnlike(film.getId());
+        }
+        recommender.onUnlike(user.getId(), film.getId());
+        return filmStorage.getFilmById(film.getId());
     }
     public List<Film> getMostPopularFilmByCountLikes(Integer count, Integer genreId, Year year){
-        return filmStorage.getMostPopularFilmByCountLikes(count, genreId, year);
+        return filmStorage.getFilmsByIds(popularityIndex.getTopFilmIds(count, genreId, year));
+    }
+
+    public boolean checkPopularityIndexConsistency(Integer count, Integer genreId, Year year) {
+        List<Integer> fromIndex = popularityIndex.getTopFilmIds(count, genreId, year);
+        List<Integer> fromDataBase = new ArrayList<>();
+        for (Film film : filmStorage.getMostPopularFilmByCountLikes(count, genreId, year)) {
+            fromDataBase.add(film.getId());
+        }
+
+        if (!fromIndex.equals(fromDataBase)) {
+            log.warn("Индекс популярности расходится с базой для count: {}, genreId: {}, year: {}. " +
+                    "Индекс: {}, база: {}", count, genreId, year, fromIndex, fromDataBase);
+            return false;
+        }
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileLikeCountsOnStartup() {
+        reconcileLikeCounts();
+        popularityIndex.rebuild();
+        recommender.rebuild();
+    }
+
+    public int reconcileLikeCounts() {
+        return filmStorage.reconcileLikeCounts();
     }
     public UserService getUserService() {
         return userService;
@@ -79,11 +150,8 @@ public class FilmService {
         return filmStorage.getSortedFilmByDirector(directorId, sortBy);
     }
 
-    public List<Film> findCommon (int userId, int friendId){
-        List<Film> common = filmStorage.findCommon(userId, friendId);
-        common.sort((o1, o2) -> o2.getLikes().size() - o1.getLikes().size());
-
-                return common;
+    public List<Film> findCommon (int userId, int friendId, int count){
+        return filmStorage.findCommon(userId, friendId, count);
     }
 
     public List<Film> searchFilm(String substring, String by) throws IllegalArgumentException {
@@ -0,0 +1,244 @@
+package ru.yandex.practicum.filmorate.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.Event;
+import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Лента друзей в памяти: для каждого пользователя, который хотя бы раз ее запросил, хранится кольцевой
+ * буфер из последних capacity событий его друзей. Записанные события раскладываются по буферам
+ * подписчиков автора (fan-out-on-write). События пользователей, у которых больше celebrity-followers
+ * подписчиков, не раскладываются, а дочитываются из базы при запросе ленты (fan-out-on-read).
+ */
+@Component
+@Slf4j
+public class FriendTimelineCache {
+    private final JdbcTemplate jdbcTemplate;
+    private final EventStorage eventStorage;
+    private final int capacity;
+    private final int celebrityFollowers;
+
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Counter cacheReads;
+    private final Counter dataBaseReads;
+
+    public FriendTimelineCache(JdbcTemplate jdbcTemplate, EventStorage eventStorage, MeterRegistry meterRegistry,
+                               @Value("${filmorate.timeline.capacity:200}") int capacity,
+                               @Value("${filmorate.timeline.celebrity-followers:1000}") int celebrityFollowers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventStorage = eventStorage;
+        this.capacity = capacity;
+        this.celebrityFollowers = celebrityFollowers;
+        this.cacheReads = Counter.builder("filmorate.timeline.reads")
+                .tag("source", "cache")
+                .register(meterRegistry);
+        this.dataBaseReads = Counter.builder("filmorate.timeline.reads")
+                .tag("source", "db")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Раскладывает записанные события по лентам подписчиков их авторов. Вызывается потоком записи
+     * событий после вставки пачки, поэтому события приходят с id и по возрастанию id.
+     */
+    public void publish(List<Event> events) {
+        if (events.isEmpty() || timelines.isEmpty()) {
+            return;
+        }
+        Set<Long> authorIds = new HashSet<>();
+        for (Event event : events) {
+            authorIds.add(event.getUserId());
+        }
+
+        Map<Long, List<Long>> followersByAuthor = new HashMap<>();
+        jdbcTemplate.query("SELECT id_user_two, id_user_one FROM users_friends WHERE id_user_two = ANY(?)",
+                (RowCallbackHandler) rs -> followersByAuthor
+                        .computeIfAbsent(rs.getLong("id_user_two"), key -> new ArrayList<>())
+                        .add(rs.getLong("id_user_one")),
+                (Object) authorIds.toArray(new Long[0]));
+
+        for (Event event : events) {
+            List<Long> followerIds = followersByAuthor.getOrDefault(event.getUserId(), Collections.emptyList());
+            if (followerIds.size() > celebrityFollowers) {
+                continue;
+            }
+            for (Long followerId : followerIds) {
+                Timeline timeline = timelines.get(followerId);
+                if (timeline != null) {
+                    timeline.add(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Последние limit событий друзей пользователя с event_id меньше before в порядке возрастания event_id.
+     */
+    public List<Event> getFeed(Long userId, Long beforeEventId, int limit) {
+        List<Long> friendIds = jdbcTemplate.queryForList(
+                "SELECT id_user_two FROM users_friends WHERE id_user_one = ?", Long.class, userId);
+        if (friendIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> celebrityIds = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id_user_two FROM users_friends WHERE id_user_two = ANY(?) " +
+                        "GROUP BY id_user_two HAVING COUNT(*) > ?",
+                Long.class, friendIds.toArray(new Long[0]), celebrityFollowers));
+        List<Long> regularIds = new ArrayList<>(friendIds);
+        regularIds.removeAll(celebrityIds);
+
+        List<Event> regularEvents = null;
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null) {
+            timeline = warmUp(userId, regularIds);
+        }
+        if (timeline != null) {
+            regularEvents = timeline.page(beforeEventId, limit);
+        }
+        if (regularEvents == null) {
+            dataBaseReads.increment();
+            regularEvents = eventStorage.getFeed(regularIds, beforeEventId, limit);
+        } else {
+            cacheReads.increment();
+        }
+        if (celebrityIds.isEmpty()) {
+            return regularEvents;
+        }
+        return merge(regularEvents, eventStorage.getFeed(celebrityIds, beforeEventId, limit), limit);
+    }
+
+    /**
+     * Сбрасывает ленту пользователя, у которого поменялся список друзей. Если друг перестал быть
+     * знаменитостью, его старых событий нет ни в одной ленте, поэтому сбрасываются все ленты.
+     */
+    public void onFriendshipChanged(Integer userId, Integer friendId) {
+        timelines.remove((long) userId);
+        Integer followers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users_friends WHERE id_user_two = ?", Integer.class, friendId);
+        if (followers != null && followers == celebrityFollowers) {
+            clear();
+        }
+    }
+
+    public void clear() {
+        timelines.clear();
+        log.info("Ленты друзей в памяти сброшены");
+    }
+
+    private Timeline warmUp(Long userId, List<Long> regularIds) {
+        Timeline timeline = new Timeline(capacity);
+        // лента регистрируется до чтения из базы, чтобы не потерять события, записанные во время чтения
+        Timeline current = timelines.putIfAbsent(userId, timeline);
+        if (current != null) {
+            return current;
+        }
+        try {
+            List<Event> events = eventStorage.getFeed(regularIds, null, capacity);
+            timeline.load(events, events.size() < capacity);
+        } catch (RuntimeException e) {
+            timelines.remove(userId, timeline);
+            timeline.load(Collections.emptyList(), false);
+            throw e;
+        }
+        return timeline;
+    }
+
+    private static List<Event> merge(List<Event> first, List<Event> second, int limit) {
+        TreeMap<Long, Event> merged = new TreeMap<>();
+        for (Event event : first) {
+            merged.put(event.getEventId(), event);
+        }
+        for (Event event : second) {
+            merged.put(event.getEventId(), event);
+        }
+        while (merged.size() > limit) {
+            merged.pollFirstEntry();
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static class Timeline {
+        private final Event[] buffer;
+        private int head;
+        private int size;
+        // все события друзей с момента загрузки помещаются в буфер, старее в базе ничего нет
+        private boolean complete;
+        private boolean loaded;
+        private final List<Event> pending = new ArrayList<>();
+
+        private Timeline(int capacity) {
+            this.buffer = new Event[capacity];
+        }
+
+        private synchronized void add(Event event) {
+            if (!loaded) {
+                pending.add(event);
+                return;
+            }
+            if (size > 0 && newest().getEventId() >= event.getEventId()) {
+                return;
+            }
+            if (size == buffer.length) {
+                complete = false;
+            }
+            buffer[(head + size) % buffer.length] = event;
+            if (size < buffer.length) {
+                size++;
+            } else {
+                head = (head + 1) % buffer.length;
+            }
+        }
+
+        private synchronized void load(List<Event> events, boolean complete) {
+            this.loaded = true;
+            this.complete = complete;
+            for (Event event : events) {
+                add(event);
+            }
+            pending.sort(Comparator.comparing(Event::getEventId));
+            for (Event event : pending) {
+                add(event);
+            }
+            pending.clear();
+            notifyAll();
+        }
+
+        /**
+         * Страница из буфера или null, если буфер не покрывает запрошенный диапазон.
+         */
+        private synchronized List<Event> page(Long beforeEventId, int limit) {
+            while (!loaded) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            LinkedList<Event> page = new LinkedList<>();
+            for (int i = size - 1; i >= 0 && page.size() < limit; i--) {
+                Event event = buffer[(head + i) % buffer.length];
+                if (beforeEventId == null || event.getEventId() < beforeEventId) {
+                    page.addFirst(event);
+                }
+            }
+            if (page.size() < limit && !complete) {
+                return null;
+            }
+            return new ArrayList<>(page);
+        }
+
+        private Event newest() {
+            return buffer[(head + size - 1) % buffer.length];
+        }
+    }
+}
@@ -1,25 +1,37 @@
 package ru.yandex.practicum.filmorate.services;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.models.Film;
 import ru.yandex.practicum.filmorate.models.Genre;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoGenreStorage;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class GenreService {
 
     private final DaoGenreStorage daoGenreStorage;
+    private final ReferenceCache<Genre> genreCache;
+
+    public GenreService(DaoGenreStorage daoGenreStorage, MeterRegistry meterRegistry) {
+        this.daoGenreStorage = daoGenreStorage;
+        this.genreCache = new ReferenceCache<>("genres", daoGenreStorage::getAllGenre, Genre::getId, meterRegistry);
+    }
+
+    @PostConstruct
+    public void warmUpCache() {
+        genreCache.refresh();
+    }
+
     public List<Genre> getAllGenre() {
-        return daoGenreStorage.getAllGenre();
+        return genreCache.getAll();
     }
 
     public Genre getGenreById(Integer id) {
-        return daoGenreStorage.getGenreById(id);
+        return genreCache.get(id, daoGenreStorage::getGenreById);
     }
     public List<Genre> getGenresByIdFilm(Integer id) {
         return daoGenreStorage.getGenresByIdFilm(id);
@@ -27,4 +39,8 @@ public class GenreService {
     public void addOrUpdateFilmGenres(Film film) {
         daoGenreStorage.addOrUpdateFilmGenres(film);
     }
+
+    public ReferenceCache<Genre> getGenreCache() {
+        return genreCache;
+    }
 }
@@ -0,0 +1,356 @@
+package ru.yandex.practicum.filmorate.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.models.Review;
+import ru.yandex.practicum.filmorate.storage.interf.ReviewStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Лучшие по полезности отзывы популярных фильмов. Для фильма хранится префикс общего порядка
+ * (useful DESC, review_id) длиной не больше topN: любой отзыв вне префикса стоит ниже последнего
+ * в нем. Голоса, правки и новые отзывы переставляют запись на месте, не сбрасывая ее. Фильмы
+ * вытесняются по LRU, когда суммарное число отзывов в кеше превышает maxReviews.
+ * Изменение внутри транзакции только запоминается и применяется после фиксации, так что читатели
+ * не видят незафиксированных голосов. Номер изменения выдается, пока строка отзыва заблокирована,
+ * поэтому из нескольких фиксаций по одному отзыву применяется только самая поздняя. При откате
+ * транзакции запись фильма сбрасывается.
+ */
+@Component
+@Slf4j
+public class HotReviewCache {
+    private static final Comparator<Review> BY_USEFUL = Comparator
+            .comparing(Review::getUseful, Comparator.reverseOrder())
+            .thenComparing(Review::getReviewId);
+    private static final int VERSION_STRIPES = 64;
+
+    private final ReviewStorage<Review> reviewStorage;
+    private final int topN;
+    private final int maxReviews;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Integer, FilmReviews> films = new LinkedHashMap<>(16, 0.75f, true);
+    // версия меняется при каждой записи по фильмам полосы: загрузка из базы, во время которой
+    // прошла запись, не кладется в кеш
+    private final long[] versions = new long[VERSION_STRIPES];
+    // незавершенные транзакции по фильмам полосы: пока они есть, загрузка видит в базе еще
+    // старые данные и тоже не кладется в кеш
+    private final int[] pending = new int[VERSION_STRIPES];
+    // последнее записанное изменение по отзывам с незавершенными транзакциями
+    private final Map<Long, PendingReview> pendingReviews = new HashMap<>();
+    private long changes;
+    private int size;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public HotReviewCache(ReviewStorage<Review> reviewStorage, MeterRegistry meterRegistry,
+                          @Value("${filmorate.reviews.cache.top-n:50}") int topN,
+                          @Value("${filmorate.reviews.cache.max-reviews:10000}") int maxReviews) {
+        this.reviewStorage = reviewStorage;
+        this.topN = topN;
+        this.maxReviews = maxReviews;
+        this.hits = Counter.builder("filmorate.reviews.cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("filmorate.reviews.cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("filmorate.reviews.cache.evictions")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.reviews.cache.size", this, HotReviewCache::getSize)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.reviews.cache.hit.ratio", this, HotReviewCache::getHitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Страница отзывов фильма после отзыва (afterUseful, afterId). Если запись фильма покрывает
+     * страницу целиком, база не читается. Отсутствующая или укоротившаяся запись (отзыв с конца
+     * префикса потерял голоса) перечитывается, страницы глубже topN читаются из базы.
+     */
+    public List<Review> getPage(int filmId, Long afterUseful, Long afterId, int limit) {
+        List<Review> page = readCached(filmId, afterUseful, afterId, limit);
+        if (page != null) {
+            hits.increment();
+            return page;
+        }
+        misses.increment();
+
+        if (needsLoad(filmId)) {
+            long version = getVersion(filmId);
+            List<Review> loaded = reviewStorage.getPage(filmId, null, null, topN + 1);
+            store(filmId, loaded, version);
+
+            page = readCached(filmId, afterUseful, afterId, limit);
+            if (page != null) {
+                return page;
+            }
+        }
+        return reviewStorage.getPage(filmId, afterUseful, afterId, limit);
+    }
+
+    /**
+     * Отзыв создан, изменен или за него проголосовали: переставляет его в записи фильма.
+     */
+    public void onReviewChanged(Review review) {
+        record(review, false);
+    }
+
+    public void onReviewDeleted(Review review) {
+        record(review, true);
+    }
+
+    public void removeFilm(int filmId) {
+        lock.lock();
+        try {
+            versions[stripe(filmId)]++;
+            dropEntry(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает кеш целиком: удаление пользователя каскадно удаляет его отзывы и голоса.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < versions.length; i++) {
+                versions[i]++;
+            }
+            films.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private List<Review> readCached(int filmId, Long afterUseful, Long afterId, int limit) {
+        lock.lock();
+        try {
+            FilmReviews entry = films.get(filmId);
+            if (entry == null) {
+                return null;
+            }
+            int from = 0;
+            if (afterUseful != null) {
+                Review cursor = new Review();
+                cursor.setUseful(afterUseful);
+                cursor.setReviewId(afterId);
+                int position = Collections.binarySearch(entry.reviews, cursor, BY_USEFUL);
+                from = position >= 0 ? position + 1 : -position - 1;
+            }
+            int to = Math.min(from + limit, entry.reviews.size());
+            if (to - from < limit && !entry.complete) {
+                return null;
+            }
+            return new ArrayList<>(entry.reviews.subList(from, to));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(int filmId, List<Review> loaded, long version) {
+        lock.lock();
+        try {
+            if (versions[stripe(filmId)] != version || pending[stripe(filmId)] > 0) {
+                return;
+            }
+            FilmReviews entry = new FilmReviews();
+            entry.complete = loaded.size() <= topN;
+            entry.reviews.addAll(loaded.subList(0, Math.min(topN, loaded.size())));
+            FilmReviews previous = films.put(filmId, entry);
+            if (previous != null) {
+                size -= previous.reviews.size();
+            }
+            size += entry.reviews.size();
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Вне транзакции изменение применяется сразу. В транзакции оно получает номер и применяется
+     * после фиксации, если по отзыву с тех пор не записано более позднее изменение; до завершения
+     * транзакции загрузки по полосе не кешируются, а при откате запись фильма сбрасывается.
+     */
+    private void record(Review review, boolean deleted) {
+        int filmId = review.getFilmId();
+        Long reviewId = review.getReviewId();
+        long change;
+        lock.lock();
+        try {
+            versions[stripe(filmId)]++;
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                apply(review, deleted);
+                return;
+            }
+            pending[stripe(filmId)]++;
+            change = ++changes;
+            PendingReview pendingReview = pendingReviews.computeIfAbsent(reviewId, key -> new PendingReview());
+            pendingReview.latest = change;
+            pendingReview.transactions++;
+        } finally {
+            lock.unlock();
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lock.lock();
+                try {
+                    if (pendingReviews.get(reviewId).latest == change) {
+                        apply(review, deleted);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                lock.lock();
+                try {
+                    pending[stripe(filmId)]--;
+                    versions[stripe(filmId)]++;
+                    PendingReview pendingReview = pendingReviews.get(reviewId);
+                    if (--pendingReview.transactions == 0) {
+                        pendingReviews.remove(reviewId);
+                    }
+                    if (status != STATUS_COMMITTED) {
+                        dropEntry(filmId);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void apply(Review review, boolean deleted) {
+        if (deleted) {
+            applyDeleted(review);
+        } else {
+            applyChanged(review);
+        }
+    }
+
+    private void applyChanged(Review review) {
+        FilmReviews entry = films.get(review.getFilmId());
+        if (entry == null) {
+            return;
+        }
+        Review previous = removeFromEntry(entry, review.getReviewId());
+
+        int position = Collections.binarySearch(entry.reviews, review, BY_USEFUL);
+        int insertAt = position >= 0 ? position : -position - 1;
+        // за последним отзывом префикса могут стоять отзывы, которых нет в кеше; отзыв префикса,
+        // который не потерял полезность, по-прежнему стоит выше них
+        boolean stillAbove = previous != null && review.getUseful() >= previous.getUseful();
+        if (insertAt == entry.reviews.size() && !entry.complete && !stillAbove) {
+            return;
+        }
+        entry.reviews.add(insertAt, review);
+        size++;
+        if (entry.reviews.size() > topN) {
+            entry.reviews.remove(entry.reviews.size() - 1);
+            entry.complete = false;
+            size--;
+        }
+        evictOverflow();
+    }
+
+    private void applyDeleted(Review review) {
+        FilmReviews entry = films.get(review.getFilmId());
+        if (entry != null) {
+            removeFromEntry(entry, review.getReviewId());
+        }
+    }
+
+    private void dropEntry(int filmId) {
+        FilmReviews entry = films.remove(filmId);
+        if (entry != null) {
+            size -= entry.reviews.size();
+        }
+    }
+
+    private Review removeFromEntry(FilmReviews entry, Long reviewId) {
+        for (Iterator<Review> iterator = entry.reviews.iterator(); iterator.hasNext(); ) {
+            Review review = iterator.next();
+            if (review.getReviewId().equals(reviewId)) {
+                iterator.remove();
+                size--;
+                return review;
+            }
+        }
+        return null;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Integer, FilmReviews>> eldest = films.entrySet().iterator();
+        while (size > maxReviews && eldest.hasNext()) {
+            size -= eldest.next().getValue().reviews.size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private boolean needsLoad(int filmId) {
+        lock.lock();
+        try {
+            FilmReviews entry = films.get(filmId);
+            return entry == null || !entry.complete && entry.reviews.size() < topN;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getVersion(int filmId) {
+        lock.lock();
+        try {
+            return versions[stripe(filmId)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(int filmId) {
+        return filmId & (VERSION_STRIPES - 1);
+    }
+
+    private static class PendingReview {
+        private long latest;
+        private int transactions;
+    }
+
+    private static class FilmReviews {
+        private final List<Review> reviews = new ArrayList<>();
+        private boolean complete;
+    }
+}
@@ -0,0 +1,346 @@
+package ru.yandex.practicum.filmorate.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рекомендации по схожести фильмов (item-based). Для каждой пары фильмов хранится число пользователей,
+ * лайкнувших оба, схожесть считается косинусной: co(i, j) / sqrt(likes(i) * likes(j)).
+ * Оценка фильма для пользователя - сумма его схожести с фильмами, которые пользователь уже лайкнул.
+ * Счетчики лежат в хеш-таблицах с открытой адресацией на примитивных массивах и обновляются
+ * на каждый лайк за O(число лайков пользователя).
+ */
+@Component
+@Slf4j
+public class ItemSimilarityRecommender implements RecommendationEngine {
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    private volatile boolean ready;
+
+    public ItemSimilarityRecommender(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void rebuild() {
+        State rebuilt = new State();
+        jdbcTemplate.query("SELECT id_user, id_film FROM likes",
+                (RowCallbackHandler) rs -> rebuilt.likesByUser
+                        .computeIfAbsent(rs.getInt("id_user"), key -> new IntIntMap())
+                        .put(rs.getInt("id_film"), 1));
+
+        int likes = 0;
+        for (IntIntMap userLikes : rebuilt.likesByUser.values()) {
+            int[] filmIds = userLikes.keyArray();
+            for (int filmId : filmIds) {
+                rebuilt.likeCounts.add(filmId, 1);
+                IntIntMap coLikes = rebuilt.coLikes.computeIfAbsent(filmId, key -> new IntIntMap());
+                for (int otherId : filmIds) {
+                    if (otherId != filmId) {
+                        coLikes.add(otherId, 1);
+                    }
+                }
+            }
+            likes += filmIds.length;
+        }
+
+        lock.writeLock().lock();
+        try {
+            state = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Матрица схожести фильмов перестроена, лайков: {}, фильмов: {}", likes, rebuilt.coLikes.size());
+    }
+
+    @Override
+    public void onLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            IntIntMap userLikes = state.likesByUser.computeIfAbsent(userId, key -> new IntIntMap());
+            if (userLikes.get(filmId) != 0) {
+                return;
+            }
+            IntIntMap coLikes = state.coLikes.computeIfAbsent(filmId, key -> new IntIntMap());
+            for (int otherId : userLikes.keyArray()) {
+                coLikes.add(otherId, 1);
+                state.coLikes.computeIfAbsent(otherId, key -> new IntIntMap()).add(filmId, 1);
+            }
+            userLikes.put(filmId, 1);
+            state.likeCounts.add(filmId, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUnlike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            unlikeLocked(userId, filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            IntIntMap userLikes = state.likesByUser.get(userId);
+            if (userLikes != null) {
+                for (int filmId : userLikes.keyArray()) {
+                    unlikeLocked(userId, filmId);
+                }
+                state.likesByUser.remove(userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            for (IntIntMap userLikes : state.likesByUser.values()) {
+                if (userLikes.get(filmId) != 0) {
+                    userLikes.remove(filmId);
+                }
+            }
+            IntIntMap coLikes = state.coLikes.remove(filmId);
+            if (coLikes != null) {
+                for (int otherId : coLikes.keyArray()) {
+                    IntIntMap otherCoLikes = state.coLikes.get(otherId);
+                    if (otherCoLikes != null) {
+                        otherCoLikes.remove(filmId);
+                    }
+                }
+            }
+            state.likeCounts.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id не больше count фильмов, которые пользователь еще не лайкнул, по убыванию оценки,
+     * при равной оценке по возрастанию id.
+     */
+    @Override
+    public List<Integer> recommend(int userId, int count) {
+        if (!ready) {
+            throw new IllegalStateException("Матрица схожести фильмов еще не построена");
+        }
+        IntDoubleMap scores = new IntDoubleMap();
+
+        lock.readLock().lock();
+        try {
+            IntIntMap userLikes = state.likesByUser.get(userId);
+            if (userLikes == null) {
+                return new ArrayList<>();
+            }
+            for (int filmId : userLikes.keyArray()) {
+                IntIntMap coLikes = state.coLikes.get(filmId);
+                if (coLikes == null) {
+                    continue;
+                }
+                double filmNorm = Math.sqrt(state.likeCounts.get(filmId));
+                int[] keys = coLikes.keys;
+                int[] values = coLikes.values;
+                for (int i = 0; i < keys.length; i++) {
+                    int otherId = keys[i];
+                    if (otherId == 0 || userLikes.get(otherId) != 0) {
+                        continue;
+                    }
+                    scores.add(otherId, values[i] / (filmNorm * Math.sqrt(state.likeCounts.get(otherId))));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores.top(count);
+    }
+
+    private void unlikeLocked(int userId, int filmId) {
+        IntIntMap userLikes = state.likesByUser.get(userId);
+        if (userLikes == null || userLikes.get(filmId) == 0) {
+            return;
+        }
+        userLikes.remove(filmId);
+        IntIntMap coLikes = state.coLikes.get(filmId);
+        for (int otherId : userLikes.keyArray()) {
+            coLikes.add(otherId, -1);
+            state.coLikes.get(otherId).add(filmId, -1);
+        }
+        state.likeCounts.add(filmId, -1);
+    }
+
+    private static class State {
+        private final Map<Integer, IntIntMap> likesByUser = new HashMap<>();
+        private final Map<Integer, IntIntMap> coLikes = new HashMap<>();
+        private final IntIntMap likeCounts = new IntIntMap();
+    }
+
+    /**
+     * Хеш-таблица int -> int с линейным пробированием. Ключ 0 означает пустую ячейку (id в базе
+     * начинаются с 1), значение 0 равносильно отсутствию ключа.
+     */
+    private static class IntIntMap {
+        private int[] keys = new int[8];
+        private int[] values = new int[8];
+        private int size;
+
+        private int get(int key) {
+            int index = indexOf(keys, key);
+            return keys[index] == key ? values[index] : 0;
+        }
+
+        private void put(int key, int value) {
+            int index = indexOf(keys, key);
+            if (keys[index] != key) {
+                keys[index] = key;
+                size++;
+            }
+            values[index] = value;
+            if (size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void add(int key, int delta) {
+            int value = get(key) + delta;
+            if (value == 0) {
+                remove(key);
+            } else {
+                put(key, value);
+            }
+        }
+
+        private void remove(int key) {
+            int index = indexOf(keys, key);
+            if (keys[index] != key) {
+                return;
+            }
+            int mask = keys.length - 1;
+            // обратный сдвиг следующих ключей цепочки, чтобы не оставлять надгробий
+            int next = (index + 1) & mask;
+            while (keys[next] != 0) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - index) & mask)) {
+                    keys[index] = keys[next];
+                    values[index] = values[next];
+                    index = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[index] = 0;
+            values[index] = 0;
+            size--;
+        }
+
+        private int[] keyArray() {
+            int[] result = new int[size];
+            int position = 0;
+            for (int key : keys) {
+                if (key != 0) {
+                    result[position++] = key;
+                }
+            }
+            return result;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int index = indexOf(keys, oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static class IntDoubleMap {
+        private int[] keys = new int[64];
+        private double[] values = new double[64];
+        private int size;
+
+        private void add(int key, double delta) {
+            int index = indexOf(keys, key);
+            if (keys[index] != key) {
+                keys[index] = key;
+                size++;
+                if (size * 2 > keys.length) {
+                    values[index] = delta;
+                    resize();
+                    return;
+                }
+            }
+            values[index] += delta;
+        }
+
+        private List<Integer> top(int count) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(count + 1, (first, second) -> {
+                int byScore = Double.compare(values[first], values[second]);
+                return byScore != 0 ? byScore : Integer.compare(keys[second], keys[first]);
+            });
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                best.add(i);
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+
+            List<Integer> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add(keys[best.poll()]);
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new double[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int index = indexOf(keys, oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static int indexOf(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.services;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Неизменяемое сжатое множество id фильмов: хранятся только ненулевые 64-битные слова и их номера
+ * по возрастанию. Пересечение идет слиянием номеров слов, по совпавшим словам - AND и Long.bitCount,
+ * которые JIT сводит к инструкциям and/popcnt.
+ */
+final class LikeBitmap {
+    static final LikeBitmap EMPTY = new LikeBitmap(new int[0], new long[0], 0);
+
+    private final int[] wordIndexes;
+    private final long[] words;
+    private final int cardinality;
+
+    private LikeBitmap(int[] wordIndexes, long[] words, int cardinality) {
+        this.wordIndexes = wordIndexes;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    static LikeBitmap of(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int[] wordIndexes = new int[sorted.length];
+        long[] words = new long[sorted.length];
+        int size = -1;
+        int cardinality = 0;
+        for (int id : sorted) {
+            int wordIndex = id >>> 6;
+            if (size < 0 || wordIndexes[size] != wordIndex) {
+                size++;
+                wordIndexes[size] = wordIndex;
+            }
+            long bit = 1L << id;
+            if ((words[size] & bit) == 0) {
+                words[size] |= bit;
+                cardinality++;
+            }
+        }
+        return new LikeBitmap(Arrays.copyOf(wordIndexes, size + 1), Arrays.copyOf(words, size + 1), cardinality);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int id) {
+        int position = Arrays.binarySearch(wordIndexes, id >>> 6);
+        return position >= 0 && (words[position] & (1L << id)) != 0;
+    }
+
+    LikeBitmap with(int id) {
+        if (contains(id)) {
+            return this;
+        }
+        int wordIndex = id >>> 6;
+        int position = Arrays.binarySearch(wordIndexes, wordIndex);
+        if (position >= 0) {
+            long[] changed = words.clone();
+            changed[position] |= 1L << id;
+            return new LikeBitmap(wordIndexes, changed, cardinality + 1);
+        }
+        int insertAt = -position - 1;
+        int[] newIndexes = new int[wordIndexes.length + 1];
+        long[] newWords = new long[words.length + 1];
+        System.arraycopy(wordIndexes, 0, newIndexes, 0, insertAt);
+        System.arraycopy(words, 0, newWords, 0, insertAt);
+        newIndexes[insertAt] = wordIndex;
+        newWords[insertAt] = 1L << id;
+        System.arraycopy(wordIndexes, insertAt, newIndexes, insertAt + 1, wordIndexes.length - insertAt);
+        System.arraycopy(words, insertAt, newWords, insertAt + 1, words.length - insertAt);
+        return new LikeBitmap(newIndexes, newWords, cardinality + 1);
+    }
+
+    LikeBitmap without(int id) {
+        if (!contains(id)) {
+            return this;
+        }
+        int position = Arrays.binarySearch(wordIndexes, id >>> 6);
+        long word = words[position] & ~(1L << id);
+        if (word != 0) {
+            long[] changed = words.clone();
+            changed[position] = word;
+            return new LikeBitmap(wordIndexes, changed, cardinality - 1);
+        }
+        int[] newIndexes = new int[wordIndexes.length - 1];
+        long[] newWords = new long[words.length - 1];
+        System.arraycopy(wordIndexes, 0, newIndexes, 0, position);
+        System.arraycopy(words, 0, newWords, 0, position);
+        System.arraycopy(wordIndexes, position + 1, newIndexes, position, wordIndexes.length - position - 1);
+        System.arraycopy(words, position + 1, newWords, position, words.length - position - 1);
+        return new LikeBitmap(newIndexes, newWords, cardinality - 1);
+    }
+
+    int andCardinality(LikeBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < wordIndexes.length && j < other.wordIndexes.length) {
+            int left = wordIndexes[i];
+            int right = other.wordIndexes[j];
+            if (left == right) {
+                count += Long.bitCount(words[i++] & other.words[j++]);
+            } else if (left < right) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Перебирает id, которые есть в этом множестве и нет в other.
+     */
+    void forEachAndNot(LikeBitmap other, IntConsumer consumer) {
+        int j = 0;
+        for (int i = 0; i < wordIndexes.length; i++) {
+            while (j < other.wordIndexes.length && other.wordIndexes[j] < wordIndexes[i]) {
+                j++;
+            }
+            long word = words[i];
+            if (j < other.wordIndexes.length && other.wordIndexes[j] == wordIndexes[i]) {
+                word &= ~other.words[j];
+            }
+            int base = wordIndexes[i] << 6;
+            while (word != 0) {
+                consumer.accept(base + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package ru.yandex.practicum.filmorate.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.models.Mpa;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoMpaStorage;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 @Service
 @Slf4j
 public class MpaService {
     private final DaoMpaStorage mpaStorage;
+    private final ReferenceCache<Mpa> mpaCache;
 
 
     @Autowired
-    public MpaService(DaoMpaStorage mpaStorage){
+    public MpaService(DaoMpaStorage mpaStorage, MeterRegistry meterRegistry){
         this.mpaStorage = mpaStorage;
+        this.mpaCache = new ReferenceCache<>("mpa", mpaStorage::getAllMpa, Mpa::getId, meterRegistry);
     }
+
+    @PostConstruct
+    public void warmUpCache() {
+        mpaCache.refresh();
+    }
+
     public List<Mpa> getAllMpa() {
-        return mpaStorage.getAllMpa();
+        return mpaCache.getAll();
     }
 
     public Mpa getMpaById(Integer id) {
-        return mpaStorage.getMpaById(id);
+        return mpaCache.get(id, mpaStorage::getMpaById);
+    }
+
+    public ReferenceCache<Mpa> getMpaCache() {
+        return mpaCache;
     }
 }
@@ -0,0 +1,236 @@
+package ru.yandex.practicum.filmorate.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.models.Genre;
+import ru.yandex.practicum.filmorate.storage.interf.FilmStorage;
+
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Рейтинг фильмов по лайкам в памяти: отдельное отсортированное множество на все фильмы,
+ * на каждый жанр, год и пару (жанр, год). Порядок совпадает с SQL: like_count DESC, id.
+ * Изменение лайков фильма переставляет его во всех его множествах за O(log n).
+ * Изменения, пришедшие во время перестроения, повторяются на новом состоянии перед заменой.
+ */
+@Component
+@Slf4j
+public class PopularityIndex {
+    private static final Comparator<Entry> BY_LIKES = Comparator.comparingInt((Entry entry) -> entry.likes)
+            .reversed()
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    // изменения, примененные к state во время перестроения; null, когда перестроение не идет
+    private List<Consumer<State>> changesDuringRebuild;
+
+    public PopularityIndex(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt = new State();
+        boolean loaded = false;
+        try {
+            for (Film film : filmStorage.getFilms()) {
+                rebuilt.add(Entry.of(film));
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+                    state = rebuilt;
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Индекс популярности перестроен, фильмов: {}", rebuilt.entries.size());
+    }
+
+    /**
+     * Новый или измененный фильм. У фильма, который уже есть в индексе, меняются только год
+     * и жанры: счетчик лайков остается из индекса, его ведут onLike и onUnlike.
+     */
+    public void put(Film film) {
+        Entry entry = Entry.of(film);
+        apply(current -> current.put(entry));
+    }
+
+    public void onLike(int filmId) {
+        move(filmId, 1);
+    }
+
+    public void onUnlike(int filmId) {
+        move(filmId, -1);
+    }
+
+    /**
+     * Лайки удаленного пользователя: каждый фильм из списка теряет по одному лайку.
+     */
+    public void onUnlike(Collection<Integer> filmIds) {
+        List<Integer> unliked = new ArrayList<>(filmIds);
+        apply(current -> {
+            for (int filmId : unliked) {
+                current.move(filmId, -1);
+            }
+        });
+    }
+
+    public void remove(int filmId) {
+        apply(current -> current.remove(filmId));
+    }
+
+    private void move(int filmId, int delta) {
+        apply(current -> current.move(filmId, delta));
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> getTopFilmIds(int count, Integer genreId, Year year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> ranking;
+            if (genreId == null && year == null) {
+                ranking = state.all;
+            } else if (genreId != null && year != null) {
+                ranking = state.byGenreAndYear.get(genreAndYearKey(genreId, year.getValue()));
+            } else if (genreId == null) {
+                ranking = state.byYear.get(year.getValue());
+            } else {
+                ranking = state.byGenre.get(genreId);
+            }
+
+            List<Integer> filmIds = new ArrayList<>();
+            if (ranking == null) {
+                return filmIds;
+            }
+            for (Entry entry : ranking) {
+                if (filmIds.size() >= count) {
+                    break;
+                }
+                filmIds.add(entry.filmId);
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long genreAndYearKey(int genreId, int year) {
+        return ((long) genreId << 32) | year;
+    }
+
+    private static class State {
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        private final NavigableSet<Entry> all = new TreeSet<>(BY_LIKES);
+        private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+        private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+        private final Map<Long, NavigableSet<Entry>> byGenreAndYear = new HashMap<>();
+
+        private void add(Entry entry) {
+            entries.put(entry.filmId, entry);
+            all.add(entry);
+            byYear.computeIfAbsent(entry.year, key -> new TreeSet<>(BY_LIKES)).add(entry);
+            for (int genreId : entry.genreIds) {
+                byGenre.computeIfAbsent(genreId, key -> new TreeSet<>(BY_LIKES)).add(entry);
+                byGenreAndYear.computeIfAbsent(genreAndYearKey(genreId, entry.year), key -> new TreeSet<>(BY_LIKES))
+                        .add(entry);
+            }
+        }
+
+        private void put(Entry entry) {
+            Entry existing = entries.get(entry.filmId);
+            if (existing == null) {
+                add(entry);
+                return;
+            }
+            remove(entry.filmId);
+            add(new Entry(entry.filmId, existing.likes, entry.year, entry.genreIds));
+        }
+
+        private void remove(int filmId) {
+            Entry entry = entries.remove(filmId);
+            if (entry == null) {
+                return;
+            }
+            all.remove(entry);
+            removeFrom(byYear, entry.year, entry);
+            for (int genreId : entry.genreIds) {
+                removeFrom(byGenre, genreId, entry);
+                removeFrom(byGenreAndYear, genreAndYearKey(genreId, entry.year), entry);
+            }
+        }
+
+        // счетчик меняется относительно текущего значения в индексе, а не перечитанного фильма,
+        // поэтому параллельные лайки не затирают друг друга
+        private void move(int filmId, int delta) {
+            Entry entry = entries.get(filmId);
+            if (entry == null) {
+                return;
+            }
+            remove(filmId);
+            add(new Entry(filmId, entry.likes + delta, entry.year, entry.genreIds));
+        }
+
+        private static <K> void removeFrom(Map<K, NavigableSet<Entry>> rankings, K key, Entry entry) {
+            NavigableSet<Entry> ranking = rankings.get(key);
+            if (ranking != null) {
+                ranking.remove(entry);
+                if (ranking.isEmpty()) {
+                    rankings.remove(key);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final int filmId;
+        private final int likes;
+        private final int year;
+        private final int[] genreIds;
+
+        private Entry(int filmId, int likes, int year, int[] genreIds) {
+            this.filmId = filmId;
+            this.likes = likes;
+            this.year = year;
+            this.genreIds = genreIds;
+        }
+
+        private static Entry of(Film film) {
+            int likes = film.getLikes() == null ? 0 : film.getLikes().size();
+            int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                    .mapToInt(Genre::getId)
+                    .distinct()
+                    .toArray();
+            return new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds);
+        }
+    }
+}
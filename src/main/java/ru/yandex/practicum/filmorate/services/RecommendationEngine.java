@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.services;
+
+import java.util.List;
+
+public interface RecommendationEngine {
+    void rebuild();
+
+    void onLike(int userId, int filmId);
+
+    void onUnlike(int userId, int filmId);
+
+    void removeUser(int userId);
+
+    void removeFilm(int filmId);
+
+    /**
+     * Id не больше count рекомендованных фильмов по убыванию оценки. Если движок еще не готов,
+     * бросает IllegalStateException.
+     */
+    List<Integer> recommend(int userId, int count);
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выбирает движок рекомендаций по filmorate.recommendations.engine и передает ему изменения лайков.
+ * Неактивный движок не загружается и не обновляется.
+ * Готовые top-N рекомендации хранятся по пользователям и пересчитываются по расписанию только для тех,
+ * чьи лайки менялись, и тех, у кого есть общий лайкнутый фильм с ними: только их соседи и схожесть
+ * их фильмов могли измениться. Для схожести фильмов к ним добавляются пользователи, лайкнувшие фильмы,
+ * которые лайкают вместе с измененными: у этих пар поменялась схожесть. Снимок самого пользователя
+ * сбрасывается сразу при его лайке, а снимок, посчитанный до лайка, не сохраняется: у каждого
+ * пользователя есть версия, и снимок записывается, только если она не изменилась за время расчета.
+ */
+@Component
+@Slf4j
+public class Recommender {
+    static final String USER_SIMILARITY = "user-similarity";
+    static final String ITEM_SIMILARITY = "item-similarity";
+
+    private final RecommendationEngine engine;
+    private final boolean itemBased;
+    private final JdbcTemplate jdbcTemplate;
+    private final int snapshotSize;
+
+    private final Map<Integer, int[]> snapshots = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final Set<Integer> changedUsers = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> changedFilms = ConcurrentHashMap.newKeySet();
+    private final AtomicLong oldestChangeMillis = new AtomicLong();
+    private volatile boolean fullRefresh = true;
+    private final Timer refreshTimer;
+
+    public Recommender(UserSimilarityRecommender userSimilarity, ItemSimilarityRecommender itemSimilarity,
+                       JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                       @Value("${filmorate.recommendations.engine:" + USER_SIMILARITY + "}") String engineName,
+                       @Value("${filmorate.recommendations.snapshot-size:100}") int snapshotSize) {
+        switch (engineName) {
+            case USER_SIMILARITY:
+                engine = userSimilarity;
+                break;
+            case ITEM_SIMILARITY:
+                engine = itemSimilarity;
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный движок рекомендаций: " + engineName);
+        }
+        this.itemBased = engine == itemSimilarity;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotSize = snapshotSize;
+        this.refreshTimer = Timer.builder("filmorate.recommendations.refresh")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.recommendations.staleness.seconds", oldestChangeMillis,
+                        oldest -> oldest.get() == 0 ? 0 : (System.currentTimeMillis() - oldest.get()) / 1000.0)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.recommendations.pending.users", changedUsers, Set::size)
+                .register(meterRegistry);
+        log.info("Движок рекомендаций: {}", engineName);
+    }
+
+    public void rebuild() {
+        engine.rebuild();
+        snapshots.clear();
+        fullRefresh = true;
+    }
+
+    public void onLike(int userId, int filmId) {
+        engine.onLike(userId, filmId);
+        markChanged(userId, filmId);
+    }
+
+    public void onUnlike(int userId, int filmId) {
+        engine.onUnlike(userId, filmId);
+        markChanged(userId, filmId);
+    }
+
+    /**
+     * Пользователь удален вместе с лайками: пересчитываются те, кто лайкал те же фильмы.
+     */
+    public void removeUser(int userId, Collection<Integer> likedFilmIds) {
+        engine.removeUser(userId);
+        invalidate(userId);
+        changedFilms.addAll(likedFilmIds);
+        oldestChangeMillis.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    /**
+     * Фильм удален вместе с лайками: его бывшие поклонники пересчитываются как изменившие лайки.
+     */
+    public void removeFilm(int filmId, Collection<Integer> likedUserIds) {
+        engine.removeFilm(filmId);
+        for (Integer userId : likedUserIds) {
+            invalidate(userId);
+            changedUsers.add(userId);
+        }
+        oldestChangeMillis.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    /**
+     * Рекомендации из снимка, если он есть и в нем хватает фильмов, иначе расчет движком.
+     */
+    public List<Integer> recommend(int userId, int count) {
+        int[] snapshot = snapshots.get(userId);
+        if (snapshot == null || (count > snapshotSize && snapshot.length == snapshotSize)) {
+            long version = getVersion(userId);
+            List<Integer> filmIds = engine.recommend(userId, Math.max(count, snapshotSize));
+            publish(userId, version, toArray(filmIds, snapshotSize));
+            return new ArrayList<>(filmIds.subList(0, Math.min(count, filmIds.size())));
+        }
+
+        List<Integer> filmIds = new ArrayList<>(Math.min(count, snapshot.length));
+        for (int i = 0; i < snapshot.length && i < count; i++) {
+            filmIds.add(snapshot[i]);
+        }
+        return filmIds;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:60000}",
+            initialDelayString = "${filmorate.recommendations.refresh-interval-ms:60000}")
+    public void refresh() {
+        long start = System.nanoTime();
+        boolean full = fullRefresh;
+        fullRefresh = false;
+        Set<Integer> users = drain(changedUsers);
+        Set<Integer> films = drain(changedFilms);
+        long changedSince = oldestChangeMillis.getAndSet(0);
+        if (!full && users.isEmpty() && films.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<Integer> targets = full ? getActiveUsers() : getAffectedUsers(users, films);
+            targets.parallelStream()
+                    .forEach(userId -> {
+                        long version = getVersion(userId);
+                        publish(userId, version, toArray(engine.recommend(userId, snapshotSize), snapshotSize));
+                    });
+            if (full) {
+                snapshots.keySet().retainAll(targets);
+            }
+            log.info("Снимки рекомендаций пересчитаны: {} из {} пользователей, полный пересчет: {}",
+                    targets.size(), snapshots.size(), full);
+        } catch (RuntimeException e) {
+            // изменения не потеряны: следующий запуск пересчитает всех
+            fullRefresh = true;
+            oldestChangeMillis.compareAndSet(0, changedSince == 0 ? System.currentTimeMillis() : changedSince);
+            log.warn("Снимки рекомендаций не пересчитаны: {}", e.getMessage());
+        } finally {
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void markChanged(int userId, int filmId) {
+        invalidate(userId);
+        changedFilms.add(filmId);
+        changedUsers.add(userId);
+        oldestChangeMillis.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    // версия растет до удаления снимка, поэтому publish, прочитавший старую версию, либо
+    // успевает раньше удаления, либо видит новую версию и ничего не записывает
+    private void invalidate(int userId) {
+        versions.merge(userId, 1L, Long::sum);
+        snapshots.remove(userId);
+    }
+
+    private long getVersion(int userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Сохраняет снимок, только если лайки пользователя не менялись с начала расчета. Пропущенный
+     * пользователь уже стоит в очереди изменений и пересчитается следующим запуском.
+     */
+    private void publish(int userId, long version, int[] snapshot) {
+        snapshots.compute(userId, (id, current) -> getVersion(id) == version ? snapshot : current);
+    }
+
+    private Set<Integer> getActiveUsers() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT DISTINCT id_user FROM likes", Integer.class));
+    }
+
+    private Set<Integer> getAffectedUsers(Set<Integer> users, Set<Integer> films) {
+        Set<Integer> affected = new HashSet<>(users);
+        affected.addAll(jdbcTemplate.queryForList(
+                "SELECT DISTINCT id_user FROM likes WHERE id_film IN " +
+                        "(SELECT id_film FROM likes WHERE id_user = ANY(?))",
+                Integer.class, (Object) users.toArray(new Integer[0])));
+        affected.addAll(jdbcTemplate.queryForList(
+                "SELECT DISTINCT id_user FROM likes WHERE id_film = ANY(?)",
+                Integer.class, (Object) films.toArray(new Integer[0])));
+        if (itemBased) {
+            affected.addAll(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT id_user FROM likes WHERE id_film IN " +
+                            "(SELECT id_film FROM likes WHERE id_user IN " +
+                            "(SELECT id_user FROM likes WHERE id_film = ANY(?)))",
+                    Integer.class, (Object) films.toArray(new Integer[0])));
+        }
+        return affected;
+    }
+
+    private static Set<Integer> drain(Set<Integer> source) {
+        Set<Integer> drained = new HashSet<>();
+        for (Integer id : source) {
+            if (source.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+    private static int[] toArray(List<Integer> filmIds, int limit) {
+        int[] result = new int[Math.min(limit, filmIds.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = filmIds.get(i);
+        }
+        return result;
+    }
+}
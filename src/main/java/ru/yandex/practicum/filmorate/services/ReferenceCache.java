@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Неизменяемый снимок небольшого справочника (MPA, жанры, режиссеры) с доступом по id через массив.
+ * Если id разрежены (справочник режиссеров растет и из него удаляют), вместо массива до максимального
+ * id снимок держит HashMap. Снимок целиком заменяется при refresh(), поэтому чтение идет без блокировок.
+ */
+@Slf4j
+public class ReferenceCache<T> {
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final Counter hits;
+    private final Counter misses;
+
+    // массив по id строится, только пока он не больше чем вдвое длиннее самого справочника
+    private static final int DENSE_SLACK = 64;
+
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new Object[0], null, Collections.emptyList());
+
+    public ReferenceCache(String name, Supplier<List<T>> loader, ToIntFunction<T> idExtractor,
+                          MeterRegistry meterRegistry) {
+        this.name = name;
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+        this.hits = Counter.builder("filmorate.reference.cache.hits")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.misses = Counter.builder("filmorate.reference.cache.misses")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public void refresh() {
+        List<T> values = loader.get();
+        int maxId = 0;
+        for (T value : values) {
+            maxId = Math.max(maxId, idExtractor.applyAsInt(value));
+        }
+
+        if (maxId <= values.size() * 2 + DENSE_SLACK) {
+            Object[] byId = new Object[maxId + 1];
+            for (T value : values) {
+                byId[idExtractor.applyAsInt(value)] = value;
+            }
+            snapshot = new Snapshot<>(byId, null, Collections.unmodifiableList(values));
+        } else {
+            Map<Integer, T> sparse = new HashMap<>();
+            for (T value : values) {
+                sparse.put(idExtractor.applyAsInt(value), value);
+            }
+            snapshot = new Snapshot<>(null, sparse, Collections.unmodifiableList(values));
+        }
+        log.debug("Справочник {} загружен в кеш, записей: {}", name, values.size());
+    }
+
+    public List<T> getAll() {
+        return snapshot.values;
+    }
+
+    /**
+     * Возвращает значение из снимка, а при промахе идет в базу через fallback и перечитывает снимок.
+     * Если записи нет и в базе, fallback бросает исключение как и прежде.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id, IntFunction<T> fallback) {
+        Snapshot<T> current = snapshot;
+        T cached = current.sparse != null
+                ? current.sparse.get(id)
+                : id >= 0 && id < current.byId.length ? (T) current.byId[id] : null;
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        T value = fallback.apply(id);
+        refresh();
+        return value;
+    }
+
+    public double getHitCount() {
+        return hits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+
+    private static class Snapshot<T> {
+        private final Object[] byId;
+        private final Map<Integer, T> sparse;
+        private final List<T> values;
+
+        private Snapshot(Object[] byId, Map<Integer, T> sparse, List<T> values) {
+            this.byId = byId;
+            this.sparse = sparse;
+            this.values = values;
+        }
+    }
+}
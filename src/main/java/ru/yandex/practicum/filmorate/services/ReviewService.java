@@ -4,7 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.exceptions.EmptyResultFromDataBaseException;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.models.Review;
 import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
 import ru.yandex.practicum.filmorate.storage.interf.ReviewStorage;
@@ -21,24 +21,24 @@ public class ReviewService {
 
     private final EventStorage eventStorage;
 
+    private final EventWriter eventWriter;
+
+    private final HotReviewCache hotReviewCache;
+
     public List<Review> getAll() {
         return reviewStorage.getAll();
     }
 
-    public List<Review> findReviewsByParams(Map<String, Integer> params) {
-        return reviewStorage.getByParams(params);
+    public List<Review> findReviewsByParams(Integer filmId, Long afterUseful, Long afterId, int count) {
+        if (filmId != null) {
+            return hotReviewCache.getPage(filmId, afterUseful, afterId, count);
+        }
+        return reviewStorage.getPage(filmId, afterUseful, afterId, count);
     }
 
     public Review create(Review review) {
-        if (!reviewStorage.checkFilmExists(review.getFilmId())) {
-            throw new EmptyResultFromDataBaseException("Фильм с идентификатором " + review.getFilmId() + " отсутствует");
-        }
-
-        if (!reviewStorage.checkUserExists(review.getUserId())) {
-            throw new EmptyResultFromDataBaseException("Пользователь с идентификатором " + review.getUserId() + " отсутствует");
-        }
-
         Review createdReview = reviewStorage.create(review);
+        hotReviewCache.onReviewChanged(createdReview);
 
         Map<String, Object> params = eventStorage.makeEvent(
                 (long)review.getUserId(),
@@ -46,19 +46,13 @@ public class ReviewService {
                 "review",
                 "add"
         );
-        eventStorage.save(params);
+        eventWriter.submit(params);
         return createdReview;
     }
 
     public Review update(Review review) {
-        if (!reviewStorage.checkFilmExists(review.getFilmId())) {
-            throw new EmptyResultFromDataBaseException("Фильм с идентификатором " + review.getFilmId() + " отсутствует");
-        }
-        if (!reviewStorage.checkUserExists(review.getUserId())) {
-            throw new EmptyResultFromDataBaseException("Пользователь с идентификатором " + review.getUserId() + " отсутствует");
-        }
-
         Review updatedReview = reviewStorage.update(review);
+        hotReviewCache.onReviewChanged(updatedReview);
 
         Map<String, Object> params = eventStorage.makeEvent(
                 (long)updatedReview.getUserId(),
@@ -66,7 +60,7 @@ public class ReviewService {
                 "review",
                 "update"
         );
-        eventStorage.save(params);
+        eventWriter.submit(params);
         
         return updatedReview;
     }
@@ -75,39 +69,37 @@ public class ReviewService {
         return reviewStorage.getById(reviewId);
     }
 
+    // изменение для кеша записывается, пока строка отзыва заблокирована, а применяется после коммита
+    @Transactional
     public void addLikeToReview(Integer reviewId, Integer userId) {
-        if (!reviewStorage.checkUserExists(userId)) {
-            throw new EmptyResultFromDataBaseException("Пользователь с идентификатором " + userId + " отсутствует");
-        }
-
-        if (!reviewStorage.checkReviewExists(reviewId)) {
-            throw new EmptyResultFromDataBaseException("Отзыв с идентификатором " + reviewId + " отсутствует");
-        }
-        reviewStorage.addLikeToReview(reviewId, userId);
+        hotReviewCache.onReviewChanged(reviewStorage.addLikeToReview(reviewId, userId));
     }
 
+    @Transactional
     public void addDisLikeToReview(Integer reviewId, Integer userId) {
-        if (!reviewStorage.checkUserExists(userId)) {
-            throw new EmptyResultFromDataBaseException("Пользователь с идентификатором " + userId + " отсутствует");
-        }
+        hotReviewCache.onReviewChanged(reviewStorage.addDisLikeToReview(reviewId, userId));
+    }
 
-        if (!reviewStorage.checkReviewExists(reviewId)) {
-            throw new EmptyResultFromDataBaseException("Отзыв с идентификатором " + reviewId + " отсутствует");
-        }
-        reviewStorage.addDisLikeToReview(reviewId, userId);
+    @Transactional
+    public void removeLikeFromReview(Integer reviewId, Integer userId) {
+        hotReviewCache.onReviewChanged(reviewStorage.removeLikeFromReview(reviewId, userId));
+    }
+
+    @Transactional
+    public void removeDisLikeFromReview(Integer reviewId, Integer userId) {
+        hotReviewCache.onReviewChanged(reviewStorage.removeDisLikeFromReview(reviewId, userId));
     }
 
     public void delete(Long reviewId) {
-        if (!reviewStorage.checkReviewExists(Math.toIntExact(reviewId))) {
-            throw new EmptyResultFromDataBaseException("Отзыв с идентификатором " + reviewId + " отсутствует");
-        }
+        Review deletedReview = reviewStorage.delete(reviewId);
+        hotReviewCache.onReviewDeleted(deletedReview);
+
         Map<String, Object> params = eventStorage.makeEvent(
-                1L,
+                (long) deletedReview.getUserId(),
                 Math.toIntExact(reviewId),
                 "review",
                 "remove"
         );
-        eventStorage.save(params);
-        reviewStorage.delete(reviewId);
+        eventWriter.submit(params);
     }
 }
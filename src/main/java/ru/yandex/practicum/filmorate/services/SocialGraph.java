@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы в памяти. Для каждого пользователя хранится отсортированный массив id друзей
+ * (id_user_one -> id_user_two) и обратный массив тех, у кого он в друзьях. Массивы не меняются
+ * на месте: запись подменяет массив целиком, поэтому чтение идет без блокировок.
+ * Общие друзья - слияние двух отсортированных массивов, рекомендации друзей - друзья друзей,
+ * упорядоченные по числу общих друзей.
+ */
+@Component
+@Slf4j
+public class SocialGraph {
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Object writeLock = new Object();
+    private volatile Map<Integer, int[]> friends = new ConcurrentHashMap<>();
+    private volatile Map<Integer, int[]> followers = new ConcurrentHashMap<>();
+
+    public SocialGraph(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Integer, List<Integer>> friendLists = new HashMap<>();
+        Map<Integer, List<Integer>> followerLists = new HashMap<>();
+        jdbcTemplate.query("SELECT id_user_one, id_user_two FROM users_friends", (RowCallbackHandler) rs -> {
+            int userId = rs.getInt("id_user_one");
+            int friendId = rs.getInt("id_user_two");
+            friendLists.computeIfAbsent(userId, key -> new ArrayList<>()).add(friendId);
+            followerLists.computeIfAbsent(friendId, key -> new ArrayList<>()).add(userId);
+        });
+
+        Map<Integer, int[]> rebuiltFriends = toSortedArrays(friendLists);
+        Map<Integer, int[]> rebuiltFollowers = toSortedArrays(followerLists);
+        synchronized (writeLock) {
+            friends = rebuiltFriends;
+            followers = rebuiltFollowers;
+        }
+        log.info("Граф дружбы перестроен, пользователей с друзьями: {}", rebuiltFriends.size());
+    }
+
+    public void addFriend(int userId, int friendId) {
+        synchronized (writeLock) {
+            friends.put(userId, insert(friends.getOrDefault(userId, EMPTY), friendId));
+            followers.put(friendId, insert(followers.getOrDefault(friendId, EMPTY), userId));
+        }
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        synchronized (writeLock) {
+            friends.computeIfPresent(userId, (key, ids) -> removeOrNull(ids, friendId));
+            followers.computeIfPresent(friendId, (key, ids) -> removeOrNull(ids, userId));
+        }
+    }
+
+    public void removeUser(int userId) {
+        synchronized (writeLock) {
+            for (int friendId : friends.getOrDefault(userId, EMPTY)) {
+                followers.computeIfPresent(friendId, (key, ids) -> removeOrNull(ids, userId));
+            }
+            for (int followerId : followers.getOrDefault(userId, EMPTY)) {
+                friends.computeIfPresent(followerId, (key, ids) -> removeOrNull(ids, userId));
+            }
+            friends.remove(userId);
+            followers.remove(userId);
+        }
+    }
+
+    public int[] getFriendIds(int userId) {
+        return friends.getOrDefault(userId, EMPTY);
+    }
+
+    public int[] getCommonFriendIds(int userId, int otherId) {
+        int[] first = getFriendIds(userId);
+        int[] second = getFriendIds(otherId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                common[size++] = first[i];
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    /**
+     * Не больше count друзей друзей пользователя, которые еще не у него в друзьях, по убыванию
+     * числа общих друзей, при равенстве по возрастанию id.
+     */
+    public List<Integer> suggestFriends(int userId, int count) {
+        int[] own = getFriendIds(userId);
+        int total = 0;
+        int[][] lists = new int[own.length][];
+        for (int i = 0; i < own.length; i++) {
+            lists[i] = getFriendIds(own[i]);
+            total += lists[i].length;
+        }
+        int[] candidates = new int[total];
+        int position = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, candidates, position, list.length);
+            position += list.length;
+        }
+        Arrays.sort(candidates);
+
+        // после сортировки одинаковые id идут подряд, длина серии - число общих друзей
+        List<int[]> mutualCounts = new ArrayList<>();
+        for (int start = 0; start < candidates.length; ) {
+            int candidateId = candidates[start];
+            int end = start;
+            while (end < candidates.length && candidates[end] == candidateId) {
+                end++;
+            }
+            if (candidateId != userId && Arrays.binarySearch(own, candidateId) < 0) {
+                mutualCounts.add(new int[]{candidateId, end - start});
+            }
+            start = end;
+        }
+        mutualCounts.sort((first, second) -> first[1] != second[1]
+                ? Integer.compare(second[1], first[1])
+                : Integer.compare(first[0], second[0]));
+
+        List<Integer> result = new ArrayList<>(Math.min(count, mutualCounts.size()));
+        for (int i = 0; i < mutualCounts.size() && i < count; i++) {
+            result.add(mutualCounts.get(i)[0]);
+        }
+        return result;
+    }
+
+    private static Map<Integer, int[]> toSortedArrays(Map<Integer, List<Integer>> lists) {
+        Map<Integer, int[]> result = new ConcurrentHashMap<>();
+        lists.forEach((userId, ids) -> {
+            int[] sorted = ids.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+            result.put(userId, sorted);
+        });
+        return result;
+    }
+
+    private static int[] insert(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static int[] removeOrNull(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+}
@@ -4,13 +4,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
 import ru.yandex.practicum.filmorate.models.Event;
 import ru.yandex.practicum.filmorate.models.Film;
 import ru.yandex.practicum.filmorate.models.User;
 import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
+import ru.yandex.practicum.filmorate.storage.interf.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.interf.UserStorage;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -19,8 +24,23 @@ import java.util.*;
 public class UserService {
 
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
     private final EventStorage eventStorage;
 
+    private final EventWriter eventWriter;
+
+    private final FriendTimelineCache friendTimelineCache;
+
+    private final HotReviewCache hotReviewCache;
+
+    private final SocialGraph socialGraph;
+
+    private final PopularityIndex popularityIndex;
+
+    private final Recommender recommender;
+
+    private final BulkImporter bulkImporter;
+
     public User getUserById(Integer userId){
         User user = userStorage.getUserById(userId);
         log.info("Возвращен пользователь с id: {}", userId);
@@ -32,6 +52,10 @@ public class UserService {
         return curUser;
     }
 
+    public BulkImportResult importUsers(InputStream inputStream, Integer chunkSize) throws IOException {
+        return bulkImporter.importNdjson(inputStream, User.class, chunkSize, userStorage::addUsers);
+    }
+
     public User updateUser(User user){
         User curUser = userStorage.updateUser(user);
 
@@ -46,8 +70,25 @@ public class UserService {
         return listUser;
     }
 
+    public void exportUsers(Consumer<User> consumer) {
+        userStorage.exportUsers(consumer);
+    }
+
+    public List<User> getUsers(int afterId, int limit) {
+        List<User> users = userStorage.getUsers(afterId, limit);
+        log.info("Возвращена страница пользователей после id {}, размер: {}", afterId, users.size());
+        return users;
+    }
+
     public void removeUser(Integer id) {
-        userStorage.removeUser(id);
+        List<Integer> likedFilmIds = userStorage.removeUser(id);
+        //события и дружбы пользователя удалены каскадно
+        friendTimelineCache.clear();
+        //отзывы и голоса пользователя тоже удалены каскадно
+        hotReviewCache.clear();
+        socialGraph.removeUser(id);
+        recommender.removeUser(id, likedFilmIds);
+        popularityIndex.onUnlike(likedFilmIds);
     }
 
 
@@ -61,8 +102,11 @@ public class UserService {
             "friend",
             "add"
         );
-        eventStorage.save(params);
-        return userStorage.addFriend(userId,friendId);
+        eventWriter.submit(params);
+        User user = userStorage.addFriend(userId,friendId);
+        socialGraph.addFriend(userId, friendId);
+        friendTimelineCache.onFriendshipChanged(userId, friendId);
+        return user;
     }
     public User removeFriend(Integer userId, Integer friendId){
         Map<String, Object> params = eventStorage.makeEvent(
@@ -71,27 +115,67 @@ public class UserService {
                 "friend",
                 "remove"
         );
-        eventStorage.save(params);
-        return userStorage.removeFriend(userId, friendId);
+        eventWriter.submit(params);
+        User user = userStorage.removeFriend(userId, friendId);
+        socialGraph.removeFriend(userId, friendId);
+        friendTimelineCache.onFriendshipChanged(userId, friendId);
+        return user;
     }
     public Set<User> getFriendsById(Integer userId){
-        Set<User> setFriends = userStorage.getFriendsById(userId);
+        userStorage.getUserById(userId);
+        Set<User> setFriends = new HashSet<>(getUsersWithFriends(socialGraph.getFriendIds(userId)));
 
         log.info("Возвращены друзья {} пользователя с id: {} ",setFriends.toString(), userId);
         return setFriends;
     }
     public Set<User> getCommonFriends(Integer userId, Integer otherId){
-        Set<User> setFriends = userStorage.getCommonFriends(userId, otherId);
+        Set<User> setFriends = new HashSet<>(getUsersWithFriends(socialGraph.getCommonFriendIds(userId, otherId)));
 
         log.info("Возвращены общие друзья {} пользователей c id: {} и {}",setFriends.toString(), userId, otherId);
         return setFriends;
     }
 
-    public List<Event> getFeedByUserId(Integer id) {
-        return eventStorage.getOneById((long) id);
+    public List<User> suggestFriends(Integer userId, Integer count) {
+        userStorage.getUserById(userId);
+        List<Integer> suggestedIds = socialGraph.suggestFriends(userId, count);
+        log.info("Пользователю с id: {} предложены друзья: {}", userId, suggestedIds);
+        return getUsersWithFriends(suggestedIds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private List<User> getUsersWithFriends(int[] userIds) {
+        List<Integer> ids = new ArrayList<>(userIds.length);
+        for (int userId : userIds) {
+            ids.add(userId);
+        }
+        List<User> users = userStorage.getUsersByIds(ids);
+        for (User user : users) {
+            Set<Integer> friendIds = new HashSet<>();
+            for (int friendId : socialGraph.getFriendIds(user.getId())) {
+                friendIds.add(friendId);
+            }
+            user.setFriends(friendIds);
+        }
+        return users;
+    }
+
+    public List<Event> getFeedByUserId(Integer id, Long before, int limit, boolean friends) {
+        eventWriter.flush();
+        if (friends) {
+            return friendTimelineCache.getFeed((long) id, before, limit);
+        }
+        return eventStorage.getFeed((long) id, before, limit);
     }
 
-    public List<Film> getRecommendations(Integer id) {
-        return userStorage.getRecommendations(id);
+    public List<Film> getRecommendations(Integer id, Integer count) {
+        List<Integer> filmIds;
+        try {
+            filmIds = recommender.recommend(id, count);
+        } catch (IllegalStateException e) {
+            log.warn("Движок рекомендаций недоступен, рекомендации из базы: {}", e.getMessage());
+            List<Film> films = userStorage.getRecommendations(id);
+            return films.subList(0, Math.min(count, films.size()));
+        }
+        log.info("Для пользователя с id: {} рекомендованы фильмы: {}", id, filmIds);
+        return filmStorage.getFilmsByIds(filmIds);
     }
 }
@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Рекомендации по похожим пользователям. Лайки каждого пользователя хранятся как LikeBitmap,
+ * схожесть - коэффициент Жаккара |A & B| / |A | B|. Ближайшие соседи ищутся параллельно в ForkJoinPool:
+ * каждая задача держит свои top-k, результаты сливаются. Оценка фильма - сумма схожести соседей,
+ * которые его лайкнули, а сам пользователь - нет.
+ */
+@Component
+@Slf4j
+public class UserSimilarityRecommender implements RecommendationEngine {
+    private static final int SEQUENTIAL_THRESHOLD = 2048;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int neighbours;
+    private volatile Map<Integer, LikeBitmap> likesByUser = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public UserSimilarityRecommender(JdbcTemplate jdbcTemplate,
+                                     @Value("${filmorate.recommendations.neighbours:50}") int neighbours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighbours = neighbours;
+    }
+
+    @Override
+    public void rebuild() {
+        Map<Integer, List<Integer>> filmIdsByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT id_user, id_film FROM likes",
+                (RowCallbackHandler) rs -> filmIdsByUser
+                        .computeIfAbsent(rs.getInt("id_user"), key -> new ArrayList<>())
+                        .add(rs.getInt("id_film")));
+
+        Map<Integer, LikeBitmap> rebuilt = new ConcurrentHashMap<>();
+        filmIdsByUser.forEach((userId, filmIds) ->
+                rebuilt.put(userId, LikeBitmap.of(filmIds.stream().mapToInt(Integer::intValue).toArray())));
+        likesByUser = rebuilt;
+        ready = true;
+        log.info("Битовые множества лайков перестроены, пользователей: {}", rebuilt.size());
+    }
+
+    @Override
+    public void onLike(int userId, int filmId) {
+        likesByUser.compute(userId, (key, likes) -> (likes == null ? LikeBitmap.EMPTY : likes).with(filmId));
+    }
+
+    @Override
+    public void onUnlike(int userId, int filmId) {
+        likesByUser.computeIfPresent(userId, (key, likes) -> likes.without(filmId));
+    }
+
+    @Override
+    public void removeUser(int userId) {
+        likesByUser.remove(userId);
+    }
+
+    @Override
+    public void removeFilm(int filmId) {
+        for (Integer userId : likesByUser.keySet()) {
+            onUnlike(userId, filmId);
+        }
+    }
+
+    /**
+     * Id не больше count фильмов по убыванию оценки, при равной оценке по возрастанию id.
+     */
+    @Override
+    public List<Integer> recommend(int userId, int count) {
+        if (!ready) {
+            throw new IllegalStateException("Битовые множества лайков еще не загружены");
+        }
+        Map<Integer, LikeBitmap> snapshot = likesByUser;
+        LikeBitmap target = snapshot.get(userId);
+        if (target == null || target.cardinality() == 0) {
+            return new ArrayList<>();
+        }
+
+        int size = snapshot.size();
+        int[] userIds = new int[size];
+        LikeBitmap[] bitmaps = new LikeBitmap[size];
+        int position = 0;
+        for (Map.Entry<Integer, LikeBitmap> entry : snapshot.entrySet()) {
+            if (position == size) {
+                break;
+            }
+            userIds[position] = entry.getKey();
+            bitmaps[position] = entry.getValue();
+            position++;
+        }
+
+        List<Neighbour> nearest = ForkJoinPool.commonPool()
+                .invoke(new NeighbourSearch(userId, target, userIds, bitmaps, 0, position, neighbours));
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : nearest) {
+            neighbour.likes.forEachAndNot(target,
+                    filmId -> scores.merge(filmId, neighbour.similarity, Double::sum));
+        }
+        List<Integer> filmIds = new ArrayList<>(scores.keySet());
+        filmIds.sort(Comparator.comparing((Integer filmId) -> scores.get(filmId)).reversed()
+                .thenComparing(filmId -> filmId));
+        return new ArrayList<>(filmIds.subList(0, Math.min(count, filmIds.size())));
+    }
+
+    private static class Neighbour {
+        private final int userId;
+        private final double similarity;
+        private final LikeBitmap likes;
+
+        private Neighbour(int userId, double similarity, LikeBitmap likes) {
+            this.userId = userId;
+            this.similarity = similarity;
+            this.likes = likes;
+        }
+    }
+
+    private static class NeighbourSearch extends RecursiveTask<List<Neighbour>> {
+        private static final Comparator<Neighbour> WORST_FIRST = Comparator
+                .comparingDouble((Neighbour neighbour) -> neighbour.similarity)
+                .thenComparing(Comparator.comparingInt((Neighbour neighbour) -> neighbour.userId).reversed());
+
+        private final int userId;
+        private final LikeBitmap target;
+        private final int[] userIds;
+        private final LikeBitmap[] bitmaps;
+        private final int from;
+        private final int to;
+        private final int k;
+
+        private NeighbourSearch(int userId, LikeBitmap target, int[] userIds, LikeBitmap[] bitmaps,
+                                int from, int to, int k) {
+            this.userId = userId;
+            this.target = target;
+            this.userIds = userIds;
+            this.bitmaps = bitmaps;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        @Override
+        protected List<Neighbour> compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                NeighbourSearch left = new NeighbourSearch(userId, target, userIds, bitmaps, from, middle, k);
+                NeighbourSearch right = new NeighbourSearch(userId, target, userIds, bitmaps, middle, to, k);
+                left.fork();
+                List<Neighbour> merged = new ArrayList<>(right.compute());
+                merged.addAll(left.join());
+                return top(merged);
+            }
+
+            PriorityQueue<Neighbour> best = new PriorityQueue<>(k + 1, WORST_FIRST);
+            for (int i = from; i < to; i++) {
+                if (userIds[i] == userId) {
+                    continue;
+                }
+                LikeBitmap likes = bitmaps[i];
+                int common = target.andCardinality(likes);
+                if (common == 0) {
+                    continue;
+                }
+                double similarity = (double) common / (target.cardinality() + likes.cardinality() - common);
+                best.add(new Neighbour(userIds[i], similarity, likes));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            return new ArrayList<>(best);
+        }
+
+        private List<Neighbour> top(List<Neighbour> neighbours) {
+            neighbours.sort(WORST_FIRST.reversed());
+            return neighbours.subList(0, Math.min(k, neighbours.size()));
+        }
+    }
+}
@@ -13,6 +13,7 @@ import ru.yandex.practicum.filmorate.models.Film;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -20,9 +21,11 @@ import java.util.Objects;
 @Slf4j
 public class DaoDirectorStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final FilmSearchIndex filmSearchIndex;
 
-    public DaoDirectorStorage(JdbcTemplate jdbcTemplate) {
+    public DaoDirectorStorage(JdbcTemplate jdbcTemplate, FilmSearchIndex filmSearchIndex) {
         this.jdbcTemplate = jdbcTemplate;
+        this.filmSearchIndex = filmSearchIndex;
     }
 
     public List<Director> getAllDirector() {
@@ -71,6 +74,7 @@ public class DaoDirectorStorage {
         jdbcTemplate.update(sqlQuery,
                 director.getName(),
                 director.getId());
+        filmSearchIndex.putDirector(director);
         return director;
     }
 
@@ -79,6 +83,7 @@ public class DaoDirectorStorage {
         jdbcTemplate.update(sqlQuery, id);
         String sql = "DELETE FROM DIRECTORS WHERE id = ?";
         jdbcTemplate.update(sql, id);
+        filmSearchIndex.removeDirector(id);
     }
 
     public List<Director> getDirectorsByIdFilm(int id) {
@@ -87,17 +92,13 @@ public class DaoDirectorStorage {
     }
 
     public void addOrUpdateFilmDirectors(Film film) {
+        List<Integer> directorIds = new ArrayList<>();
         if (film.getDirectors() != null) {
-            String sqlDirectors = "DELETE FROM FILM_DIRECTORS WHERE ID_FILM = ?";
-            jdbcTemplate.update(sqlDirectors, film.getId());
             for (Director director : film.getDirectors()) {
-                sqlDirectors = "MERGE INTO FILM_DIRECTORS(ID_FILM, ID_DIRECTOR) VALUES (?, ?)";
-                jdbcTemplate.update(sqlDirectors, film.getId(), director.getId());
+                directorIds.add(director.getId());
             }
-        } else {
-            String sqlDirectors = "DELETE FROM FILM_DIRECTORS WHERE ID_FILM = ? ";
-            jdbcTemplate.update(sqlDirectors, film.getId());
         }
+        FilmLinkWriter.sync(jdbcTemplate, "film_directors", "id_director", film.getId(), directorIds);
     }
 
     private Director mapRowToDirector(ResultSet resultSet, int i) throws SQLException {
@@ -2,18 +2,28 @@ package ru.yandex.practicum.filmorate.storage.daoImpl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.mapper.EventRowMapper;
 import ru.yandex.practicum.filmorate.models.Event;
 import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 @Component
 @Primary
@@ -22,34 +32,105 @@ public class DaoEventStorage implements EventStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private static final String INSERT_EVENT = "INSERT INTO events(user_id, entity_id, event_type, operation, `timestamp`) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
     @Override
     public void save(Map<String, Object> data) {
-
         if (!data.isEmpty()) {
-            StringBuilder sql = new StringBuilder("INSERT INTO events SET ");
-
-            String delimiter = ", ";
-            int counter = 1;
-            int total = data.size();
-            for( String e: data.keySet() ) {
-                if (counter == total) {
-                    delimiter = ";";
+            jdbcTemplate.update(INSERT_EVENT, toArgs(data));
+        }
+    }
+
+    /**
+     * Пишет события одним пакетом и возвращает их с id, выданными базой, в порядке вставки.
+     */
+    @Override
+    public List<Event> saveAll(List<Map<String, Object>> data) {
+        if (data.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS)) {
+                for (Map<String, Object> event : data) {
+                    Object[] args = toArgs(event);
+                    for (int i = 0; i < args.length; i++) {
+                        ps.setObject(i + 1, args[i]);
+                    }
+                    ps.addBatch();
                 }
-                sql.append(" ").append(e).append(" = ").append("'").append(data.get(e)).append("'").append(delimiter);
-                counter++;
+                ps.executeBatch();
+
+                List<Long> generatedIds = new ArrayList<>();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generatedIds.add(keys.getLong(1));
+                    }
+                }
+                return generatedIds;
             }
+        });
+        if (ids == null || ids.size() != data.size()) {
+            throw new IllegalStateException("База вернула не все сгенерированные id событий");
+        }
 
-            jdbcTemplate.update(sql.toString());
+        List<Event> events = new ArrayList<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            events.add(toEvent(data.get(i), ids.get(i)));
         }
+        return events;
     }
 
     @Override
-    public List<Event> getOneById(Long id) {
+    public List<Event> getFeed(Long userId, Long beforeEventId, int limit) {
+        List<Event> events = getNewestEvents(userId, beforeEventId, limit);
+        Collections.reverse(events);
+        return events;
+    }
+
+    @Override
+    public List<Event> getFriendsFeed(Long userId, Long beforeEventId, int limit) {
+        List<Long> friendIds = jdbcTemplate.queryForList(
+                "SELECT id_user_two FROM users_friends WHERE id_user_one = ?", Long.class, userId);
+        return getFeed(friendIds, beforeEventId, limit);
+    }
+
+    /**
+     * Общая лента нескольких пользователей: по каждому берется не больше limit последних событий
+     * по индексу (user_id, event_id), списки сливаются одним k-путевым слиянием по event_id.
+     */
+    @Override
+    public List<Event> getFeed(Collection<Long> userIds, Long beforeEventId, int limit) {
+        PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(
+                Comparator.comparingLong((PeekingIterator head) -> head.peek().getEventId()).reversed());
+        for (Long id : userIds) {
+            List<Event> events = getNewestEvents(id, beforeEventId, limit);
+            if (!events.isEmpty()) {
+                heads.add(new PeekingIterator(events.iterator()));
+            }
+        }
+
+        List<Event> result = new ArrayList<>(limit);
+        while (result.size() < limit && !heads.isEmpty()) {
+            PeekingIterator head = heads.poll();
+            result.add(head.next());
+            if (head.hasNext()) {
+                heads.add(head);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private List<Event> getNewestEvents(Long userId, Long beforeEventId, int limit) {
+        if (beforeEventId == null) {
+            return jdbcTemplate.query(
+                    "SELECT * FROM events WHERE user_id = ? ORDER BY event_id DESC LIMIT ?",
+                    new EventRowMapper(), userId, limit);
+        }
         return jdbcTemplate.query(
-            "SELECT * FROM events WHERE user_id = ? ORDER BY event_id",
-            new EventRowMapper(),
-            id
-        );
+                "SELECT * FROM events WHERE user_id = ? AND event_id < ? ORDER BY event_id DESC LIMIT ?",
+                new EventRowMapper(), userId, beforeEventId, limit);
     }
 
     @Override
@@ -64,4 +145,49 @@ public class DaoEventStorage implements EventStorage {
 
         return params;
     }
+
+    private static Event toEvent(Map<String, Object> data, Long eventId) {
+        Event event = new Event();
+        event.setEventId(eventId);
+        event.setUserId((Long) data.get("user_id"));
+        event.setEntityId((Integer) data.get("entity_id"));
+        event.setEventType((String) data.get("event_type"));
+        event.setOperation((String) data.get("operation"));
+        event.setTimestamp((Long) data.get("timestamp"));
+        return event;
+    }
+
+    private static Object[] toArgs(Map<String, Object> event) {
+        return new Object[]{
+                event.get("user_id"),
+                event.get("entity_id"),
+                event.get("event_type"),
+                event.get("operation"),
+                event.get("timestamp")
+        };
+    }
+
+    private static class PeekingIterator {
+        private final Iterator<Event> iterator;
+        private Event next;
+
+        private PeekingIterator(Iterator<Event> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.next();
+        }
+
+        private Event peek() {
+            return next;
+        }
+
+        private Event next() {
+            Event current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+
+        private boolean hasNext() {
+            return next != null;
+        }
+    }
 }
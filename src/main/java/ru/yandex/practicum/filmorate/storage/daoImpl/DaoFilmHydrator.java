@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.storage.daoImpl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.Director;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.models.Genre;
+import ru.yandex.practicum.filmorate.models.Mpa;
+import ru.yandex.practicum.filmorate.services.DirectorService;
+import ru.yandex.practicum.filmorate.services.GenreService;
+import ru.yandex.practicum.filmorate.services.MpaService;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Собирает фильмы пачкой: сначала базовые строки из films, затем по одному запросу
+ * на каждую связь (лайки, жанры, режиссеры) для всего набора id. MPA, названия жанров
+ * и имена режиссеров берутся из кеша справочников.
+ */
+@Component
+@Slf4j
+public class DaoFilmHydrator {
+    static final int CHUNK_SIZE = 1000;
+    static final int STREAM_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final MpaService mpaService;
+    private final GenreService genreService;
+    private final DirectorService directorService;
+
+    public DaoFilmHydrator(JdbcTemplate jdbcTemplate, MpaService mpaService, GenreService genreService,
+                           DirectorService directorService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.mpaService = mpaService;
+        this.genreService = genreService;
+        this.directorService = directorService;
+    }
+
+    public List<Film> query(String sqlQuery, Object... args) {
+        return hydrate(jdbcTemplate.query(sqlQuery, DaoFilmHydrator::mapRowToBaseFilm, args));
+    }
+
+    /**
+     * Потоковый вариант query: базовые строки читаются курсором с fetch size, связи догружаются
+     * пачками по STREAM_BATCH_SIZE фильмов, и в памяти одновременно держится не больше одной пачки.
+     */
+    public void stream(String sqlQuery, Consumer<Film> consumer) {
+        List<Film> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_BATCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            batch.add(mapRowToBaseFilm(rs, 0));
+            if (batch.size() == STREAM_BATCH_SIZE) {
+                hydrate(batch).forEach(consumer);
+                batch.clear();
+            }
+        });
+        hydrate(batch).forEach(consumer);
+    }
+
+    /**
+     * Собирает сохраненный фильм из входных данных без перечитывания строки films:
+     * MPA, жанры и режиссеры берутся из кеша справочников.
+     */
+    public Film assemble(Film film, Set<Integer> likes) {
+        SortedMap<Integer, Genre> genres = new TreeMap<>();
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genres.put(genre.getId(), genreService.getGenreById(genre.getId()));
+            }
+        }
+
+        SortedMap<Integer, Director> directors = new TreeMap<>();
+        if (film.getDirectors() != null) {
+            for (Director director : film.getDirectors()) {
+                directors.put(director.getId(), directorService.getDirectorById(director.getId()));
+            }
+        }
+
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .rate(film.getRate())
+                .likes(new HashSet<>(likes))
+                .mpa(mpaService.getMpaById(film.getMpa().getId()))
+                .genres(new ArrayList<>(genres.values()))
+                .directors(new ArrayList<>(directors.values()))
+                .build();
+    }
+
+    public List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        Set<Integer> filmIds = new LinkedHashSet<>();
+        for (Film film : films) {
+            filmIds.add(film.getId());
+        }
+
+        Map<Integer, Set<Integer>> likes = getLikesByFilmIds(filmIds);
+        Map<Integer, List<Genre>> genres = getGenresByFilmIds(filmIds);
+        Map<Integer, List<Director>> directors = getDirectorsByFilmIds(filmIds);
+
+        for (Film film : films) {
+            film.setLikes(new HashSet<>(likes.getOrDefault(film.getId(), Collections.emptySet())));
+            film.setGenres(new ArrayList<>(genres.getOrDefault(film.getId(), Collections.emptyList())));
+            film.setDirectors(new ArrayList<>(directors.getOrDefault(film.getId(), Collections.emptyList())));
+            film.setMpa(mpaService.getMpaById(film.getMpa().getId()));
+        }
+        return films;
+    }
+
+    private Map<Integer, Set<Integer>> getLikesByFilmIds(Collection<Integer> filmIds) {
+        String sqlQuery = "SELECT id_film, id_user " +
+                "FROM likes " +
+                "WHERE id_film IN (:ids)";
+
+        Map<Integer, Set<Integer>> likes = new HashMap<>();
+        queryByIds(sqlQuery, filmIds, rs -> likes
+                .computeIfAbsent(rs.getInt("id_film"), id -> new HashSet<>())
+                .add(rs.getInt("id_user")));
+        return likes;
+    }
+
+    private Map<Integer, List<Genre>> getGenresByFilmIds(Collection<Integer> filmIds) {
+        String sqlQuery = "SELECT id_film, id_genre " +
+                "FROM film_genres " +
+                "WHERE id_film IN (:ids) " +
+                "ORDER BY id_genre";
+
+        Map<Integer, List<Genre>> genres = new HashMap<>();
+        queryByIds(sqlQuery, filmIds, rs -> genres
+                .computeIfAbsent(rs.getInt("id_film"), id -> new ArrayList<>())
+                .add(genreService.getGenreById(rs.getInt("id_genre"))));
+        return genres;
+    }
+
+    private Map<Integer, List<Director>> getDirectorsByFilmIds(Collection<Integer> filmIds) {
+        String sqlQuery = "SELECT id_film, id_director " +
+                "FROM film_directors " +
+                "WHERE id_film IN (:ids) " +
+                "ORDER BY id_director";
+
+        Map<Integer, List<Director>> directors = new HashMap<>();
+        queryByIds(sqlQuery, filmIds, rs -> directors
+                .computeIfAbsent(rs.getInt("id_film"), id -> new ArrayList<>())
+                .add(directorService.getDirectorById(rs.getInt("id_director"))));
+        return directors;
+    }
+
+    private void queryByIds(String sqlQuery, Collection<Integer> ids, RowCallbackHandler handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Integer> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = idList.subList(from, Math.min(from + CHUNK_SIZE, idList.size()));
+            namedJdbcTemplate.query(sqlQuery, new MapSqlParameterSource("ids", chunk), handler);
+        }
+    }
+
+    static Film mapRowToBaseFilm(ResultSet resultSet, int i) throws SQLException {
+        return Film.builder()
+                .id(resultSet.getInt("id"))
+                .name(resultSet.getString("name"))
+                .description(resultSet.getString("description"))
+                .releaseDate(resultSet.getDate("release_date").toLocalDate())
+                .duration(resultSet.getInt("duration"))
+                .rate(resultSet.getInt("rate"))
+                .mpa(Mpa.builder()
+                        .id(resultSet.getInt("mpa"))
+                        .build())
+                .build();
+    }
+}
@@ -1,24 +1,32 @@
 package ru.yandex.practicum.filmorate.storage.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.models.Director;
 import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.models.Genre;
 import ru.yandex.practicum.filmorate.services.DirectorService;
 import ru.yandex.practicum.filmorate.services.GenreService;
-import ru.yandex.practicum.filmorate.services.MpaService;
 import ru.yandex.practicum.filmorate.storage.interf.FilmStorage;
 
 import java.sql.*;
 import java.sql.Date;
 import java.time.Year;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 @Slf4j
@@ -26,15 +34,23 @@ import java.util.*;
 public class DaoFilmStorage implements FilmStorage {
 
     private final JdbcTemplate jdbcTemplate;
-    private final MpaService mpaService;
     private final GenreService genreService;
     private final DirectorService directorService;
+    private final DaoFilmHydrator filmHydrator;
+    private final FilmSearchIndex filmSearchIndex;
 
-    public DaoFilmStorage(JdbcTemplate jdbcTemplate) {
+    public DaoFilmStorage(JdbcTemplate jdbcTemplate, GenreService genreService, DirectorService directorService,
+                          DaoFilmHydrator filmHydrator, FilmSearchIndex filmSearchIndex) {
         this.jdbcTemplate = jdbcTemplate;
-        this.mpaService = new MpaService(new DaoMpaStorage(jdbcTemplate));
-        this.genreService = new GenreService(new DaoGenreStorage(jdbcTemplate));
-        this.directorService = new DirectorService(new DaoDirectorStorage(jdbcTemplate));
+        this.genreService = genreService;
+        this.directorService = directorService;
+        this.filmHydrator = filmHydrator;
+        this.filmSearchIndex = filmSearchIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildSearchIndex() {
+        filmSearchIndex.rebuild(getFilms());
     }
 
     @Override
@@ -42,24 +58,68 @@ public class DaoFilmStorage implements FilmStorage {
         String sqlQuery = "SELECT * " +
                 "FROM films";
 
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilms);
+        return filmHydrator.query(sqlQuery);
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        String sqlQuery = "SELECT * " +
+                "FROM films " +
+                "ORDER BY id";
+
+        filmHydrator.stream(sqlQuery, consumer);
+    }
+
+    @Override
+    public List<Film> getFilms(int afterId, int limit) {
+        String sqlQuery = "SELECT * " +
+                "FROM films " +
+                "WHERE id > ? " +
+                "ORDER BY id " +
+                "LIMIT ?";
+
+        return filmHydrator.query(sqlQuery, afterId, limit);
     }
 
     @Override
     public Film getFilmById(Integer filmId) {
-        try {
-            String sqlQuery = "SELECT id, name, description, release_date, duration, rate, mpa " +
-                    "FROM films " +
-                    "WHERE id = ?";
+        String sqlQuery = "SELECT id, name, description, release_date, duration, rate, mpa " +
+                "FROM films " +
+                "WHERE id = ?";
 
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToFilms, filmId);
-        } catch (Exception e) {
+        List<Film> films = filmHydrator.query(sqlQuery, filmId);
+        if (films.isEmpty()) {
             log.info("Фильм c id {} не содержится в базе ", filmId);
             throw new ValidationException("Фильм c id: " + filmId + " не содержится в базе");
         }
+        return films.get(0);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "SELECT * " +
+                "FROM films " +
+                "WHERE id = ANY(?)";
+
+        Map<Integer, Film> films = new HashMap<>();
+        for (Film film : filmHydrator.query(sqlQuery, new Object[]{filmIds.toArray(new Integer[0])})) {
+            films.put(film.getId(), film);
+        }
+
+        List<Film> result = new ArrayList<>();
+        for (Integer filmId : filmIds) {
+            if (films.containsKey(filmId)) {
+                result.add(films.get(filmId));
+            }
+        }
+        return result;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         String sqlQuery = "INSERT INTO films(name, description, release_date, duration, rate, mpa)" +
                 "VALUES (?, ?, ?, ?, ?, ?)";
@@ -82,17 +142,89 @@ public class DaoFilmStorage implements FilmStorage {
         genreService.addOrUpdateFilmGenres(film);
         directorService.addOrUpdateFilmDirectors(film);
 
-        return getFilmById(id);
+        Film addedFilm = filmHydrator.assemble(film, Collections.emptySet());
+        afterCommit(() -> filmSearchIndex.putFilm(addedFilm));
+        return addedFilm;
+    }
+
+    /**
+     * Пакетная вставка для импорта: фильмы и их связи пишутся через JDBC batch в одной транзакции,
+     * затем вся пачка читается обратно одним проходом гидратора.
+     */
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "INSERT INTO films(name, description, release_date, duration, rate, mpa)" +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        List<Integer> ids = jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS)) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    ps.setInt(4, film.getDuration());
+                    ps.setInt(5, film.getRate());
+                    checkMpaIsNull(ps, film);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Integer> generatedIds = new ArrayList<>();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generatedIds.add(keys.getInt(1));
+                    }
+                }
+                return generatedIds;
+            }
+        });
+        if (ids == null || ids.size() != films.size()) {
+            throw new IllegalStateException("База вернула не все сгенерированные id фильмов");
+        }
+
+        List<Object[]> genreLinks = new ArrayList<>();
+        List<Object[]> directorLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(ids.get(i));
+            if (film.getGenres() != null) {
+                film.getGenres().stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> genreLinks.add(new Object[]{film.getId(), genreId}));
+            }
+            if (film.getDirectors() != null) {
+                film.getDirectors().stream()
+                        .map(Director::getId)
+                        .distinct()
+                        .forEach(directorId -> directorLinks.add(new Object[]{film.getId(), directorId}));
+            }
+        }
+        if (!genreLinks.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres(id_film, id_genre) VALUES (?, ?)", genreLinks);
+        }
+        if (!directorLinks.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_directors(id_film, id_director) VALUES (?, ?)",
+                    directorLinks);
+        }
+
+        List<Film> addedFilms = getFilmsByIds(ids);
+        afterCommit(() -> addedFilms.forEach(filmSearchIndex::putFilm));
+        return addedFilms;
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
-        getFilmById(film.getId());
         String sqlQuery = "UPDATE films SET " +
                 "name = ?, description = ?, release_date = ?, duration = ?, rate = ?, mpa = ? " +
                 "WHERE id = ?";
 
-        jdbcTemplate.update(sqlQuery
+        int updatedRows = jdbcTemplate.update(sqlQuery
                 , film.getName()
                 , film.getDescription()
                 , film.getReleaseDate()
@@ -100,15 +232,32 @@ public class DaoFilmStorage implements FilmStorage {
                 , film.getRate()
                 , film.getMpa().getId()
                 , film.getId());
+        if (updatedRows == 0) {
+            log.info("Фильм c id {} не содержится в базе ", film.getId());
+            throw new ValidationException("Фильм c id: " + film.getId() + " не содержится в базе");
+        }
 
         genreService.addOrUpdateFilmGenres(film);
         directorService.addOrUpdateFilmDirectors(film);
 
-        return getFilmById(film.getId());
+        String sqlQueryLikes = "SELECT id_user " +
+                "FROM likes " +
+                "WHERE id_film = ?";
+        Set<Integer> likes = new HashSet<>(jdbcTemplate.queryForList(sqlQueryLikes, Integer.class, film.getId()));
+
+        Film updatedFilm = filmHydrator.assemble(film, likes);
+        afterCommit(() -> filmSearchIndex.putFilm(updatedFilm));
+        return updatedFilm;
     }
 
     @Override
-    public void removeFilm(Integer id) {
+    @Transactional
+    public List<Integer> removeFilm(Integer id) {
+        //лайки удаляем сами, чтобы вернуть пользователей, у которых они были
+        String sqlQueryLikes = "SELECT id_user " +
+                "FROM OLD TABLE (DELETE FROM likes WHERE id_film = ?)";
+
+        List<Integer> likedUserIds = jdbcTemplate.queryForList(sqlQueryLikes, Integer.class, id);
 
         //удаляем жанры в связанной таблице film_genres
         String sqlQueryGenre = "DELETE " +
@@ -129,25 +278,69 @@ public class DaoFilmStorage implements FilmStorage {
                 "WHERE id = ?";
 
         jdbcTemplate.update(sqlQuery, id);
+        afterCommit(() -> filmSearchIndex.removeFilm(id));
+        return likedUserIds;
+    }
+
+    /**
+     * Индекс поиска меняется только после фиксации транзакции: откаченная запись не попадает
+     * в поиск, а другие потоки не находят фильм раньше, чем он виден в базе.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     @Override
-    public Film addLikeFromUserById(Integer filmId, Integer userId) {
+    @Transactional
+    public boolean addLikeFromUserById(Integer filmId, Integer userId) {
         String sqlQuery = "INSERT INTO likes(id_user, id_film) " +
                 "VALUES(?, ?)";
 
         jdbcTemplate.update(sqlQuery, userId, filmId);
-        return getFilmById(filmId);
+        updateLikeCount(filmId, 1);
+        return true;
     }
 
     @Override
-    public Film removeLikeFromUserById(Integer filmId, Integer userId) {
+    @Transactional
+    public boolean removeLikeFromUserById(Integer filmId, Integer userId) {
         String sqlQuery = "DELETE " +
                 "FROM likes " +
                 "WHERE id_user = ? AND id_film = ? ";
 
-        jdbcTemplate.update(sqlQuery, userId, filmId);
-        return getFilmById(filmId);
+        if (jdbcTemplate.update(sqlQuery, userId, filmId) == 0) {
+            return false;
+        }
+        updateLikeCount(filmId, -1);
+        return true;
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        String sqlQuery = "UPDATE films " +
+                "SET like_count = (SELECT COUNT(*) FROM likes WHERE likes.id_film = films.id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM likes WHERE likes.id_film = films.id)";
+
+        int fixed = jdbcTemplate.update(sqlQuery);
+        log.info("Пересчитаны счетчики лайков, исправлено фильмов: {}", fixed);
+        return fixed;
+    }
+
+    private void updateLikeCount(Integer filmId, int delta) {
+        String sqlQuery = "UPDATE films " +
+                "SET like_count = like_count + ? " +
+                "WHERE id = ?";
+
+        jdbcTemplate.update(sqlQuery, delta, filmId);
     }
 
     @Override
@@ -156,57 +349,58 @@ public class DaoFilmStorage implements FilmStorage {
             //запрос популярных фильмов по лайкам все годов и жанров
             String sqlQuery = "SELECT films.* " +
                     "FROM films " +
-                    "LEFT JOIN likes ON likes.id_film = films.id " +
-                    "GROUP BY films.id " +
-                    "ORDER BY COUNT(likes.id_user) DESC " +
+                    "ORDER BY films.like_count DESC, films.id " +
                     "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery, this::mapRowToFilms, cnt);
+            return filmHydrator.query(sqlQuery, cnt);
 
         } else if(genreId != null && year != null){
             //запрос популярных фильмов по лайкам конкретного года и жанра
             String sqlQuery = "SELECT films.* " +
                     "FROM films " +
-                    "LEFT JOIN likes ON likes.id_film = films.id " +
-                    "LEFT JOIN film_genres ON film_genres.id_film = films.id " +
-                    "WHERE EXTRACT (YEAR FROM films.release_date ) = ? " +
+                    "JOIN film_genres ON film_genres.id_film = films.id " +
+                    "WHERE films.release_date >= ? AND films.release_date < ? " +
                     "AND film_genres.id_genre = ? " +
-                    "GROUP BY films.id " +
-                    "ORDER BY COUNT(likes.id_user) DESC " +
+                    "ORDER BY films.like_count DESC, films.id " +
                     "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery, this::mapRowToFilms, String.valueOf(year), genreId, cnt);
+            return filmHydrator.query(sqlQuery, year.atDay(1), year.plusYears(1).atDay(1), genreId, cnt);
 
         } else if (genreId == null){
             //запрос популярных фильмов по лайкам конкретного года
             String sqlQuery = "SELECT films.* " +
                     "FROM films " +
-                    "LEFT JOIN likes ON likes.id_film = films.id " +
-                    "WHERE EXTRACT (YEAR FROM films.release_date ) = ? " +
-                    "GROUP BY films.id " +
-                    "ORDER BY COUNT(likes.id_user) DESC " +
+                    "WHERE films.release_date >= ? AND films.release_date < ? " +
+                    "ORDER BY films.like_count DESC, films.id " +
                     "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery,this::mapRowToFilms, String.valueOf(year), cnt);
+            return filmHydrator.query(sqlQuery, year.atDay(1), year.plusYears(1).atDay(1), cnt);
 
         } else {
             //запрос популярных фильмов по лайкам конкретного жанра
             String sqlQuery = "SELECT films.* " +
                     "FROM films " +
-                    "LEFT JOIN likes ON likes.id_film = films.id " +
-                    "LEFT JOIN film_genres ON film_genres.id_film = films.id " +
+                    "JOIN film_genres ON film_genres.id_film = films.id " +
                     "WHERE film_genres.id_genre = ? " +
-                    "GROUP BY films.id " +
-                    "ORDER BY COUNT(likes.id_user) DESC " +
+                    "ORDER BY films.like_count DESC, films.id " +
                     "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery,this::mapRowToFilms, genreId, cnt);
+            return filmHydrator.query(sqlQuery, genreId, cnt);
 
         }
     }
 
     @Override
-    public List<Film> findCommon(int userId, int friendsId){
-        String sqlQuery = " SELECT films.* " +
+    public List<Film> findCommon(int userId, int friendsId, int count){
+        //фильмы, которые лайкнули оба пользователя, по убыванию популярности
+        String sqlQuery = "SELECT films.* " +
                 "FROM films " +
-                "WHERE films.id IN (SELECT DISTINCT id_film FROM likes WHERE id_user = ? AND ?)";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilms, userId, friendsId);
+                "WHERE films.id IN (" +
+                "SELECT id_film " +
+                "FROM likes " +
+                "WHERE id_user IN (?, ?) " +
+                "GROUP BY id_film " +
+                "HAVING COUNT(*) = 2" +
+                ") " +
+                "ORDER BY films.like_count DESC, films.id " +
+                "LIMIT ?";
+        return filmHydrator.query(sqlQuery, userId, friendsId, count);
     }
 
 
@@ -222,55 +416,21 @@ public class DaoFilmStorage implements FilmStorage {
         if (sortBy.equals("likes")) {
             String sqlQuery = "SELECT FILMS.* " +
                     "FROM FILMS " +
-                    "LEFT JOIN LIKES ON LIKES.ID_FILM = FILMS.ID " +
-                    "LEFT JOIN FILM_DIRECTORS ON FILM_DIRECTORS.ID_FILM = films.ID " +
+                    "JOIN FILM_DIRECTORS ON FILM_DIRECTORS.ID_FILM = films.ID " +
                     "WHERE ID_DIRECTOR = ? " +
-                    "GROUP BY films.id " +
-                    "ORDER BY COUNT(likes.id_user) DESC ";
-            films = jdbcTemplate.query(sqlQuery, this::mapRowToFilms, directorId);
+                    "ORDER BY FILMS.LIKE_COUNT DESC, FILMS.ID ";
+            films = filmHydrator.query(sqlQuery, directorId);
         } else if (sortBy.equals("year")) {
             String sqlQuery = "SELECT FILMS.* " +
                     "FROM FILMS " +
                     "LEFT JOIN FILM_DIRECTORS ON FILM_DIRECTORS.ID_FILM = films.ID " +
                     "WHERE ID_DIRECTOR = ? " +
                     "ORDER BY FILMS.RELEASE_DATE ";
-            films = jdbcTemplate.query(sqlQuery, this::mapRowToFilms, directorId);
+            films = filmHydrator.query(sqlQuery, directorId);
         }
         return films;
     }
 
-    private Film mapRowToFilms(ResultSet resultSet, int i) throws SQLException {
-        return Film.builder()
-                .id(resultSet.getInt("id"))
-                .name(resultSet.getString("name"))
-                .description(resultSet.getString("description"))
-                .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(resultSet.getInt("duration"))
-                .likes(new HashSet<>(getLikesFromUserByFilmId(resultSet.getInt("id"))))
-                .rate(resultSet.getInt("rate"))
-                .mpa(mpaService.getMpaById(Integer.valueOf(resultSet.getString("mpa"))))
-                .genres(genreService.getGenresByIdFilm(resultSet.getInt("id")))
-                .directors(directorService.getDirectorsByIdFilm(resultSet.getInt("id")))
-                .build();
-    }
-    public List<Integer> getLikesFromUserByFilmId(int id) {
-        String sqlQuery = "SELECT id " +
-                "FROM users " +
-                "WHERE id IN" +
-                "( " +
-                "SELECT id_user " +
-                "FROM likes " +
-                "WHERE id_film IN" +
-                "(" +
-                "SELECT id_film " +
-                "FROM films " +
-                "WHERE id_film = ?" +
-                ")" +
-                ")";
-
-        return jdbcTemplate.queryForList(sqlQuery, Integer.class, id);
-    }
-
     private void checkMpaIsNull(PreparedStatement ps, Film film) throws SQLException {
         if(film.getMpa() != null){
             ps.setInt(6, film.getMpa().getId());
@@ -281,35 +441,31 @@ public class DaoFilmStorage implements FilmStorage {
         }
     }
 
-    private String getInsertString(String substring, String by) throws IllegalArgumentException {
-        substring = substring.toLowerCase(Locale.ROOT);
+    @Override
+    public List<Film> searchFilms(String substring, String by) throws IllegalArgumentException {
+        Set<Integer> filmIds;
         switch (by) {
             case "director":
-                return "(LOWER(d.name) LIKE '%" + substring + "%')";
+                filmIds = filmSearchIndex.search(substring, false, true);
+                break;
             case "title":
-                return "(LOWER(f.name) LIKE '%" + substring + "%')";
+                filmIds = filmSearchIndex.search(substring, true, false);
+                break;
             case "director,title":
             case "title,director":
-                return "(LOWER(d.name) LIKE '%" + substring + "%') OR (LOWER(f.name) LIKE '%" + substring + "%')";
+                filmIds = filmSearchIndex.search(substring, true, true);
+                break;
             default:
                 throw new IllegalArgumentException("Wrong request param.");
         }
-    }
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-    @Override
-    public List<Film> searchFilms(String substring, String by) throws IllegalArgumentException {
-        String sql = "SELECT *" +
-                    "FROM films AS f " +
-                    "LEFT OUTER JOIN film_directors AS fd ON f.id = fd.id_film " +
-                    "LEFT OUTER JOIN directors AS d ON fd.id_director = d.id " +
-                    "LEFT JOIN likes AS l ON f.id = l.id_film " +
-                    "WHERE " + getInsertString(substring, by) + " " +
-                    "GROUP BY f.id, l.id_user " +
-                    "ORDER BY COUNT(l.id_user) DESC;";
-        Set<Film> films = new HashSet<>(jdbcTemplate.query(sql, this::mapRowToFilms));
-        List<Film> result = new ArrayList<>(films);
-        result.sort(Comparator.comparingInt(film -> film.getLikes().size()));
-        Collections.reverse(result);
-        return result;
+        String sqlQuery = "SELECT * " +
+                "FROM films " +
+                "WHERE id = ANY(?) " +
+                "ORDER BY like_count DESC, id";
+        return filmHydrator.query(sqlQuery, new Object[]{filmIds.toArray(new Integer[0])});
     }
-}
\ No newline at end of file
+}
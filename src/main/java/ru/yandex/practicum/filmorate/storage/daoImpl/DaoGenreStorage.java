@@ -9,6 +9,7 @@ import ru.yandex.practicum.filmorate.models.Genre;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
@@ -42,27 +43,13 @@ public class DaoGenreStorage {
     }
 
     public void addOrUpdateFilmGenres(Film film) {
-        int id = film.getId();
-
+        List<Integer> genreIds = new ArrayList<>();
         if (film.getGenres() != null) {
-            String sqlGenre = "DELETE " +
-                    "FROM film_genres " +
-                    "WHERE id_film = ? ";
-            jdbcTemplate.update(sqlGenre, film.getId());
-
             for (Genre genre : film.getGenres()) {
-                sqlGenre = "MERGE INTO film_genres(id_film, id_genre) " +
-                        "VALUES (?, ?)";
-
-                jdbcTemplate.update(sqlGenre, id, genre.getId());
+                genreIds.add(genre.getId());
             }
-        } else {
-            String sqlGenre = "DELETE " +
-                    "FROM film_genres " +
-                    "WHERE id_film = ? ";
-
-            jdbcTemplate.update(sqlGenre, film.getId());
         }
+        FilmLinkWriter.sync(jdbcTemplate, "film_genres", "id_genre", film.getId(), genreIds);
     }
 
     public List<Genre> getGenresByIdFilm(int id) {
@@ -2,21 +2,29 @@ package ru.yandex.practicum.filmorate.storage.daoImpl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.Constants;
 import ru.yandex.practicum.filmorate.exceptions.EmptyResultFromDataBaseException;
 import ru.yandex.practicum.filmorate.mapper.ReviewRowMapper;
 import ru.yandex.practicum.filmorate.models.Review;
 import ru.yandex.practicum.filmorate.storage.interf.ReviewStorage;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Objects;
 
 @Component
 @Primary
 @RequiredArgsConstructor
 public class DaoReviewStorage implements ReviewStorage<Review> {
+    private static final String FOREIGN_KEY_PARENT_MISSING = "23506";
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -29,75 +37,69 @@ public class DaoReviewStorage implements ReviewStorage<Review> {
     }
 
     @Override
-    public List<Review> getByParams(Map<String, Integer> params) {
-        StringBuilder queryString = new StringBuilder(Constants.GET_REVIEWS_BY_FILM_ID);
-        int limit = 10;
-        if(!params.isEmpty()) {
-            if (params.containsKey("filmId")) {
-                queryString.append(" WHERE ")
-                        .append("film_id = ")
-                        .append(params.get("filmId"));
+    public List<Review> getPage(Integer filmId, Long afterUseful, Long afterId, int limit) {
+        if (filmId == null) {
+            if (afterUseful == null) {
+                return jdbcTemplate.query(Constants.GET_REVIEWS_PAGE, new ReviewRowMapper(), limit);
             }
-
-            queryString.append(" ORDER BY useful DESC");
-
-            if (params.containsKey("count")) {
-                limit = Integer.parseInt(String.valueOf(params.get("count")));
-            }
-        } else {
-            queryString.append(" ORDER BY useful DESC");
+            return jdbcTemplate.query(Constants.GET_REVIEWS_PAGE_AFTER, new ReviewRowMapper(),
+                    afterUseful, afterUseful, afterId, limit);
         }
-
-        queryString.append(" LIMIT ").append(limit);
-
-        return jdbcTemplate.query(
-                queryString.toString(),
-                new ReviewRowMapper()
-        );
+        if (afterUseful == null) {
+            return jdbcTemplate.query(Constants.GET_FILM_REVIEWS_PAGE, new ReviewRowMapper(), filmId, limit);
+        }
+        return jdbcTemplate.query(Constants.GET_FILM_REVIEWS_PAGE_AFTER, new ReviewRowMapper(),
+                filmId, afterUseful, afterUseful, afterId, limit);
     }
 
     @Override
     public Review create(Review review) {
-        createOrUpdate(
-                Constants.CREATE_REVIEW,
-                new Object[]{
-                        review.getUserId(),
-                        review.getFilmId(),
-                        review.getContent(),
-                        review.getIsPositive(),
-                        0
-                }
-        );
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(Constants.CREATE_REVIEW, new String[]{"review_id"});
+                ps.setInt(1, review.getUserId());
+                ps.setInt(2, review.getFilmId());
+                ps.setString(3, review.getContent());
+                ps.setBoolean(4, review.getIsPositive());
+                ps.setInt(5, 0);
+                return ps;
+            }, keyHolder);
+        } catch (DataIntegrityViolationException e) {
+            if (isMissingParent(e, "FK_FILM_ID")) {
+                throw new EmptyResultFromDataBaseException(
+                        "Фильм с идентификатором " + review.getFilmId() + " отсутствует");
+            }
+            if (isMissingParent(e, "FK_USER_ID")) {
+                throw new EmptyResultFromDataBaseException(
+                        "Пользователь с идентификатором " + review.getUserId() + " отсутствует");
+            }
+            throw e;
+        }
 
-        return jdbcTemplate.query(
-                        Constants.GET_LAST_REVIEW,
-                        new ReviewRowMapper()
-                )
-                .stream()
-                .findAny()
-                .orElseThrow(() -> new EmptyResultFromDataBaseException("Ничего не найдено!"));
+        Review created = new Review();
+        created.setReviewId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        created.setUserId(review.getUserId());
+        created.setFilmId(review.getFilmId());
+        created.setContent(review.getContent());
+        created.setIsPositive(review.getIsPositive());
+        created.setUseful(0L);
+        return created;
     }
 
     @Override
     public Review update(Review review) {
-        createOrUpdate(
-                Constants.UPDATE_REVIEW,
-                new Object[]{
-                        review.getContent(),
-                        review.getIsPositive(),
-                        0,
-                        review.getReviewId()
-                }
-        );
-
         return jdbcTemplate.query(
-                        Constants.GET_LAST_REVIEW_AFTER_UPDATE,
+                        Constants.UPDATE_REVIEW,
                         new ReviewRowMapper(),
+                        review.getContent(),
+                        review.getIsPositive(),
                         review.getReviewId()
                 )
                 .stream()
                 .findAny()
-                .orElseThrow(() -> new EmptyResultFromDataBaseException("Ничего не найдено!"));
+                .orElseThrow(() -> new EmptyResultFromDataBaseException(
+                        "Отзыв с идентификатором " + review.getReviewId() + " отсутствует"));
     }
 
     @Override
@@ -113,90 +115,83 @@ public class DaoReviewStorage implements ReviewStorage<Review> {
     }
 
     @Override
-    public void addLikeToReview(Integer reviewId, Integer userId) {
-        jdbcTemplate.update(
-                Constants.INSERT_LIKE_TO_REVIEW,
-                reviewId,
-                userId
-        );
-
-        jdbcTemplate.update(
-                Constants.UPDATE_REVIEW_AFTER_ADD_LIKE,
-                reviewId
-        );
-
-        jdbcTemplate.update(
-                Constants.DELETE_DISLIKE_FROM_REVIEW,
-                reviewId,
-                userId
-        );
+    @Transactional
+    public Review addLikeToReview(Integer reviewId, Integer userId) {
+        return vote(reviewId, userId, 1);
     }
 
     @Override
-    public void addDisLikeToReview(Integer reviewId, Integer userId) {
-        jdbcTemplate.update(
-                Constants.INSERT_DISLIKE_TO_REVIEW,
-                reviewId,
-                userId
-        );
-
-        jdbcTemplate.update(
-                Constants.UPDATE_REVIEW_AFTER_ADD_DISLIKE,
-                reviewId
-        );
-
-        jdbcTemplate.update(
-                Constants.DELETE_LIKE_FROM_REVIEW,
-                reviewId,
-                userId
-        );
+    @Transactional
+    public Review addDisLikeToReview(Integer reviewId, Integer userId) {
+        return vote(reviewId, userId, -1);
     }
 
     @Override
-    public void delete(Long reviewId) {
-        jdbcTemplate.update(
-                "DELETE FROM reviews WHERE review_id = ?",
-                reviewId
-        );
+    @Transactional
+    public Review removeLikeFromReview(Integer reviewId, Integer userId) {
+        return removeVote(reviewId, userId, 1);
     }
 
     @Override
-    public Boolean checkReviewExists(Integer reviewId) {
-        Integer reviewCount = jdbcTemplate.queryForObject(
-                Constants.GET_REVIEW_COUNT_ID,
-                Integer.class,
-                reviewId
-        );
-        return reviewCount != null && reviewCount > 0;
+    @Transactional
+    public Review removeDisLikeFromReview(Integer reviewId, Integer userId) {
+        return removeVote(reviewId, userId, -1);
     }
 
     @Override
-    public Boolean checkFilmExists(Integer filmId) {
-        Integer filmsCount = jdbcTemplate.queryForObject(
-                Constants.GET_FILM_BY_ID,
-                Integer.class,
-                filmId
-        );
-
-        return filmsCount != null && filmsCount > 0;
+    public Review delete(Long reviewId) {
+        return jdbcTemplate.query(
+                        Constants.DELETE_REVIEW,
+                        new ReviewRowMapper(),
+                        reviewId
+                )
+                .stream()
+                .findAny()
+                .orElseThrow(() -> new EmptyResultFromDataBaseException(
+                        "Отзыв с идентификатором " + reviewId + " отсутствует"));
     }
 
-    @Override
-    public Boolean checkUserExists(Integer userId) {
-        Integer usersCount = jdbcTemplate.queryForObject(
-                Constants.GET_USER_BY_ID,
-                Integer.class,
-                userId
-        );
+    /**
+     * Голос пользователя за отзыв: один UPDATE сдвигает useful на разницу между новым и прежним
+     * голосом, блокирует строку отзыва до конца транзакции и через FINAL TABLE возвращает ее новое
+     * состояние, поэтому параллельные голоса за один отзыв применяются по очереди. Затем голос
+     * записывается в review_votes: H2 не меняет две таблицы одним запросом.
+     */
+    private Review vote(Integer reviewId, Integer userId, int value) {
+        Review review = updateUseful(reviewId, Constants.VOTE_REVIEW, value, reviewId, userId, reviewId);
+        try {
+            jdbcTemplate.update(Constants.MERGE_REVIEW_VOTE, reviewId, userId, value);
+        } catch (DataIntegrityViolationException e) {
+            if (isMissingParent(e, "FK_REVIEW_VOTES_USER_ID")) {
+                throw new EmptyResultFromDataBaseException("Пользователь с идентификатором " + userId + " отсутствует");
+            }
+            throw e;
+        }
+        return review;
+    }
 
-        return usersCount != null && usersCount > 0;
+    private Review removeVote(Integer reviewId, Integer userId, int value) {
+        Review review = updateUseful(reviewId, Constants.UNVOTE_REVIEW, reviewId, userId, value, reviewId);
+        jdbcTemplate.update(Constants.DELETE_REVIEW_VOTE, reviewId, userId, value);
+        return review;
     }
 
-    private void createOrUpdate(String query, Object[] obj) {
-        jdbcTemplate.update(
-                query,
-                obj
+    private Review updateUseful(Integer reviewId, String sqlQuery, Object... args) {
+        return jdbcTemplate.query(sqlQuery, new ReviewRowMapper(), args)
+                .stream()
+                .findAny()
+                .orElseThrow(() -> new EmptyResultFromDataBaseException(
+                        "Отзыв с идентификатором " + reviewId + " отсутствует"));
+    }
 
-        );
+    /**
+     * Отсутствие фильма или пользователя проверяет внешний ключ: по имени ограничения понятно,
+     * какой записи нет. Остальные нарушения целостности пробрасываются как есть.
+     */
+    private static boolean isMissingParent(DataIntegrityViolationException e, String constraint) {
+        Throwable cause = e.getMostSpecificCause();
+        return cause instanceof SQLException
+                && FOREIGN_KEY_PARENT_MISSING.equals(((SQLException) cause).getSQLState())
+                && cause.getMessage().toUpperCase(Locale.ROOT).contains(constraint);
     }
 }
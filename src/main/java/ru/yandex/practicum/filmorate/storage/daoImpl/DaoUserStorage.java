@@ -2,46 +2,55 @@ package ru.yandex.practicum.filmorate.storage.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.models.Film;
 import ru.yandex.practicum.filmorate.models.User;
-import ru.yandex.practicum.filmorate.services.GenreService;
-import ru.yandex.practicum.filmorate.services.MpaService;
 import ru.yandex.practicum.filmorate.storage.interf.UserStorage;
 
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 @Primary
 public class DaoUserStorage implements UserStorage {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DaoFilmHydrator filmHydrator;
 
-    private final MpaService mpaService;
-    private final GenreService genreService;
-    public DaoUserStorage(JdbcTemplate jdbcTemplate, MpaService mpaService, GenreService genreService) {
+    public DaoUserStorage(JdbcTemplate jdbcTemplate, DaoFilmHydrator filmHydrator) {
         this.jdbcTemplate = jdbcTemplate;
-        this.mpaService = mpaService;
-        this.genreService = genreService;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.filmHydrator = filmHydrator;
     }
 
     @Override
     public User getUserById(Integer userId) {
-        try{
-            String sqlQuery = "SELECT id, name, email, login, birthday " +
-                    "FROM users " +
-                    "WHERE id = ?";
-            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToUsers, userId);
-        } catch (Exception e) {
+        String sqlQuery = "SELECT id, name, email, login, birthday " +
+                "FROM users " +
+                "WHERE id = ?";
+
+        List<User> users = queryUsers(sqlQuery, userId);
+        if (users.isEmpty()) {
             log.info("Пользователь c id - {} не содержится в базе", userId);
             throw new ValidationException("Пользователь c id - " + userId + " не содержится в базе");
         }
+        return users.get(0);
     }
 
     @Override
@@ -63,6 +72,58 @@ public class DaoUserStorage implements UserStorage {
         return getUserById(id);
     }
 
+    /**
+     * Пакетная вставка для импорта одной транзакцией. Пользователи возвращаются собранными
+     * из входных данных и сгенерированных id, без перечитывания.
+     */
+    @Override
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "INSERT INTO users(name, email, login, birthday)" +
+                "VALUES (?, ?, ?, ?)";
+
+        List<Integer> ids = jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS)) {
+                for (User user : users) {
+                    checkNullNameAndSetName(ps, user);
+                    ps.setString(2, user.getEmail());
+                    ps.setString(3, user.getLogin());
+                    if (user.getBirthday() == null) {
+                        ps.setNull(4, Types.TIMESTAMP);
+                    } else {
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Integer> generatedIds = new ArrayList<>();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generatedIds.add(keys.getInt(1));
+                    }
+                }
+                return generatedIds;
+            }
+        });
+        if (ids == null || ids.size() != users.size()) {
+            throw new IllegalStateException("База вернула не все сгенерированные id пользователей");
+        }
+
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.setId(ids.get(i));
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+            user.setFriends(new HashSet<>());
+        }
+        return users;
+    }
+
     @Override
     public User updateUser(User user) {
         String sqlQuery = "UPDATE users SET " +
@@ -83,17 +144,95 @@ public class DaoUserStorage implements UserStorage {
         String sqlQuery = "SELECT * " +
                 "FROM users";
 
-        return jdbcTemplate.query(sqlQuery, this::mapRowToUsers);
+        return queryUsers(sqlQuery);
+    }
+
+    /**
+     * Читает пользователей курсором с fetch size и догружает друзей пачками по STREAM_BATCH_SIZE,
+     * чтобы выгрузка не держала в памяти всю таблицу.
+     */
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        String sqlQuery = "SELECT * " +
+                "FROM users " +
+                "ORDER BY id";
+
+        List<User> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_BATCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            batch.add(mapRowToUsers(rs, 0));
+            if (batch.size() == STREAM_BATCH_SIZE) {
+                attachFriends(batch).forEach(consumer);
+                batch.clear();
+            }
+        });
+        attachFriends(batch).forEach(consumer);
+    }
+
+    @Override
+    public List<User> getUsers(int afterId, int limit) {
+        String sqlQuery = "SELECT * " +
+                "FROM users " +
+                "WHERE id > ? " +
+                "ORDER BY id " +
+                "LIMIT ?";
+
+        return queryUsers(sqlQuery, afterId, limit);
+    }
+
+    /**
+     * Пользователи в порядке переданных id, без списка друзей: его заполняет вызывающий код из SocialGraph.
+     */
+    @Override
+    public List<User> getUsersByIds(List<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "SELECT id, name, email, login, birthday " +
+                "FROM users " +
+                "WHERE id = ANY(?)";
+
+        Map<Integer, User> users = new HashMap<>();
+        for (User user : jdbcTemplate.query(sqlQuery, this::mapRowToUsers,
+                (Object) userIds.toArray(new Integer[0]))) {
+            users.put(user.getId(), user);
+        }
+
+        List<User> result = new ArrayList<>();
+        for (Integer userId : userIds) {
+            if (users.containsKey(userId)) {
+                result.add(users.get(userId));
+            }
+        }
+        return result;
     }
 
     @Override
-    public void removeUser (Integer id) {
+    @Transactional
+    public List<Integer> removeUser (Integer id) {
+        //лайки пользователя удаляем сами, чтобы получить его фильмы и уменьшить их счетчики
+        String sqlQueryLikes = "SELECT id_film " +
+                "FROM OLD TABLE (DELETE FROM likes WHERE id_user = ?)";
+
+        List<Integer> likedFilmIds = jdbcTemplate.queryForList(sqlQueryLikes, Integer.class, id);
+
+        String sqlQueryLikeCount = "UPDATE films " +
+                "SET like_count = like_count - 1 " +
+                "WHERE id = ANY(?)";
+
+        jdbcTemplate.update(sqlQueryLikeCount, (Object) likedFilmIds.toArray(new Integer[0]));
+
         String sqlQuery = "DELETE " +
                 "FROM users " +
                 "WHERE id = ?";
 
         log.info("Удален пользователь под id: {}", id);
         jdbcTemplate.update(sqlQuery, id);
+        return likedFilmIds;
     }
 
     @Override
@@ -121,7 +260,7 @@ public class DaoUserStorage implements UserStorage {
                 ")";
 
 
-        return new HashSet<>(jdbcTemplate.query(sqlQuery, this::mapRowToUsers, userId));
+        return new HashSet<>(queryUsers(sqlQuery, userId));
     }
 
     @Override
@@ -148,7 +287,7 @@ public class DaoUserStorage implements UserStorage {
                 "AND uf2.id_user_one = ? " +
                 ")";
 
-        return new HashSet<>(jdbcTemplate.query(sqlQuery, this::mapRowToUsers, userId, otherId));
+        return new HashSet<>(queryUsers(sqlQuery, userId, otherId));
     }
 
     private void checkNullNameAndSetName(PreparedStatement ps, User user) throws SQLException {
@@ -159,16 +298,42 @@ public class DaoUserStorage implements UserStorage {
         }
     }
 
-    private List<Integer> getUserFriendsIds(Integer userId) {
-        String sqlQuery = "SELECT id_user_two " +
+    private List<User> queryUsers(String sqlQuery, Object... args) {
+        return attachFriends(jdbcTemplate.query(sqlQuery, this::mapRowToUsers, args));
+    }
+
+    private List<User> attachFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        Map<Integer, Set<Integer>> friends = getFriendsIdsByUserIds(users.stream()
+                .map(User::getId)
+                .distinct()
+                .collect(Collectors.toList()));
+        for (User user : users) {
+            user.setFriends(new HashSet<>(friends.getOrDefault(user.getId(), Collections.emptySet())));
+        }
+        return users;
+    }
+
+    private Map<Integer, Set<Integer>> getFriendsIdsByUserIds(List<Integer> userIds) {
+        String sqlQuery = "SELECT id_user_one, id_user_two " +
                 "FROM users_friends " +
-                "WHERE id_user_one = ?";
+                "WHERE id_user_one IN (:ids)";
 
-        return jdbcTemplate.queryForList(sqlQuery, Integer.class, userId);
+        Map<Integer, Set<Integer>> friends = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = userIds.subList(from, Math.min(from + CHUNK_SIZE, userIds.size()));
+            namedJdbcTemplate.query(sqlQuery, new MapSqlParameterSource("ids", chunk), (RowCallbackHandler) rs -> friends
+                    .computeIfAbsent(rs.getInt("id_user_one"), id -> new HashSet<>())
+                    .add(rs.getInt("id_user_two")));
+        }
+        return friends;
     }
 
     public List<Film> getRecommendations(Integer userId) {
-        return jdbcTemplate.query(
+        return filmHydrator.query(
                 "SELECT * FROM FILMS film " +
                         "WHERE film.ID IN " +
                             "(SELECT likes.ID_FILM  FROM LIKES likes " +
@@ -184,32 +349,17 @@ public class DaoUserStorage implements UserStorage {
                             "HAVING likes.ID_FILM NOT IN " +
                                 "(SELECT l.ID_FILM FROM LIKES l WHERE l.ID_USER = ?)" +
                             ")",
-                this::mapRowToFilms,
                 userId, userId, userId);
     }
 
-    private Film mapRowToFilms(ResultSet resultSet, int i) throws SQLException {
-        return Film.builder()
-                .id(resultSet.getInt("id"))
-                .name(resultSet.getString("name"))
-                .description(resultSet.getString("description"))
-                .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(resultSet.getInt("duration"))
-                .likes(new HashSet<>(new DaoFilmStorage(jdbcTemplate).getLikesFromUserByFilmId(resultSet.getInt("id"))))
-                .rate(resultSet.getInt("rate"))
-                .mpa(mpaService.getMpaById(Integer.valueOf(resultSet.getString("mpa"))))
-                .genres(genreService.getGenresByIdFilm(resultSet.getInt("id")))
-                .build();
-    }
-
     private User mapRowToUsers(ResultSet resultSet, int i) throws SQLException {
+        Date birthday = resultSet.getDate("birthday");
         return User.builder()
                 .id(resultSet.getInt("id"))
                 .name(resultSet.getString("name"))
                 .email(resultSet.getString("email"))
                 .login(resultSet.getString("login"))
-                .birthday(resultSet.getDate("birthday").toLocalDate())
-                .friends(new HashSet<>(getUserFriendsIds(resultSet.getInt("id"))))
+                .birthday(birthday == null ? null : birthday.toLocalDate())
                 .build();
     }
 }
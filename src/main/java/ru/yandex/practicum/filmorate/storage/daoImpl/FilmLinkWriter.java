@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage.daoImpl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/**
+ * Синхронизирует связи фильма в таблице-связке (film_genres, film_directors) с нужным набором id:
+ * читает текущие связи одним запросом и применяет разницу двумя batchUpdate. Число обращений
+ * к базе не зависит от числа жанров и режиссеров.
+ */
+final class FilmLinkWriter {
+
+    private FilmLinkWriter() {
+    }
+
+    static void sync(JdbcTemplate jdbcTemplate, String table, String column, int filmId,
+                     Collection<Integer> linkedIds) {
+        Set<Integer> wanted = new LinkedHashSet<>(linkedIds);
+        Set<Integer> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT " + column + " FROM " + table + " WHERE id_film = ?", Integer.class, filmId));
+
+        List<Object[]> toDelete = new ArrayList<>();
+        for (Integer id : existing) {
+            if (!wanted.contains(id)) {
+                toDelete.add(new Object[]{filmId, id});
+            }
+        }
+        List<Object[]> toInsert = new ArrayList<>();
+        for (Integer id : wanted) {
+            if (!existing.contains(id)) {
+                toInsert.add(new Object[]{filmId, id});
+            }
+        }
+
+        if (!toDelete.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM " + table + " WHERE id_film = ? AND " + column + " = ?",
+                    toDelete);
+        }
+        if (!toInsert.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO " + table + "(id_film, " + column + ") VALUES (?, ?)",
+                    toInsert);
+        }
+    }
+}
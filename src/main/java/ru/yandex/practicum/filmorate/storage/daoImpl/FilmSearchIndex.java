@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.storage.daoImpl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.models.Director;
+import ru.yandex.practicum.filmorate.models.Film;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Триграммный индекс по названиям фильмов и именам режиссеров для поиска по подстроке.
+ * Кандидаты берутся пересечением списков по всем триграммам запроса и проверяются через contains,
+ * запросы короче триграммы проверяются перебором. Индекс обновляют DaoFilmStorage и DaoDirectorStorage.
+ */
+@Component
+@Slf4j
+public class FilmSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<String, Set<Integer>> filmsByGram = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<String, Set<Integer>> directorsByGram = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+
+    public void rebuild(Collection<Film> films) {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            filmsByGram.clear();
+            directorNames.clear();
+            directorsByGram.clear();
+            filmsByDirector.clear();
+            directorsByFilm.clear();
+            for (Film film : films) {
+                putFilmLocked(film);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс перестроен, фильмов: {}", films.size());
+    }
+
+    public void putFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            removeFilmLocked(film.getId());
+            putFilmLocked(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilmLocked(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            putDirectorLocked(director.getId(), director.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            removeText(directorNames, directorsByGram, directorId);
+            Set<Integer> filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                for (Integer filmId : filmIds) {
+                    removeFrom(directorsByFilm, filmId, directorId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, у которых название и/или имя одного из режиссеров содержит подстроку
+     * без учета регистра. Порядок не определен, ранжирование по популярности делает вызывающий код.
+     */
+    public Set<Integer> search(String substring, boolean byTitle, boolean byDirector) {
+        String query = normalize(substring);
+        Set<Integer> filmIds = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                filmIds.addAll(match(query, titles, filmsByGram));
+            }
+            if (byDirector) {
+                for (Integer directorId : match(query, directorNames, directorsByGram)) {
+                    filmIds.addAll(filmsByDirector.getOrDefault(directorId, Collections.emptySet()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return filmIds;
+    }
+
+    private void putFilmLocked(Film film) {
+        putText(titles, filmsByGram, film.getId(), film.getName());
+        if (film.getDirectors() == null) {
+            return;
+        }
+        for (Director director : film.getDirectors()) {
+            if (director.getName() != null) {
+                putDirectorLocked(director.getId(), director.getName());
+            }
+            filmsByDirector.computeIfAbsent(director.getId(), key -> new HashSet<>()).add(film.getId());
+            directorsByFilm.computeIfAbsent(film.getId(), key -> new HashSet<>()).add(director.getId());
+        }
+    }
+
+    private void removeFilmLocked(int filmId) {
+        removeText(titles, filmsByGram, filmId);
+        Set<Integer> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds != null) {
+            for (Integer directorId : directorIds) {
+                removeFrom(filmsByDirector, directorId, filmId);
+            }
+        }
+    }
+
+    private void putDirectorLocked(int directorId, String name) {
+        removeText(directorNames, directorsByGram, directorId);
+        putText(directorNames, directorsByGram, directorId, name);
+    }
+
+    private static Set<Integer> match(String query, Map<Integer, String> texts, Map<String, Set<Integer>> idsByGram) {
+        Set<Integer> result = new HashSet<>();
+        if (query.length() < GRAM_LENGTH) {
+            for (Map.Entry<Integer, String> text : texts.entrySet()) {
+                if (text.getValue().contains(query)) {
+                    result.add(text.getKey());
+                }
+            }
+            return result;
+        }
+
+        Set<Integer> smallest = null;
+        for (String gram : grams(query)) {
+            Set<Integer> ids = idsByGram.get(gram);
+            if (ids == null) {
+                return result;
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        for (Integer id : smallest) {
+            if (texts.get(id).contains(query)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static void putText(Map<Integer, String> texts, Map<String, Set<Integer>> idsByGram, int id,
+                                String text) {
+        if (text == null) {
+            return;
+        }
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            idsByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void removeText(Map<Integer, String> texts, Map<String, Set<Integer>> idsByGram, int id) {
+        String text = texts.remove(id);
+        if (text == null) {
+            return;
+        }
+        for (String gram : grams(text)) {
+            removeFrom(idsByGram, gram, id);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Integer>> idsByKey, K key, int id) {
+        Set<Integer> ids = idsByKey.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByKey.remove(key);
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -12,6 +12,7 @@ import ru.yandex.practicum.filmorate.storage.interf.FilmStorage;
 import java.time.LocalDate;
 import java.time.Year;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.util.Calendar.DECEMBER;
@@ -30,6 +31,27 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        return films.stream()
+                .map(this::addFilm)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        getFilms().forEach(consumer);
+    }
+
+    @Override
+    public List<Film> getFilms(int afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film addFilm(Film film) {
         CheckOnTheFirstFilm(film);
@@ -46,12 +68,13 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public void removeFilm(Integer id) {
+    public List<Integer> removeFilm(Integer id) {
         Film film = films.get(id);
         validFilmById(film.getId());
         films.remove(film.getId());
 
         log.info("Из библиотеки удален фильм {}", film);
+        return film.getLikes() == null ? new ArrayList<>() : new ArrayList<>(film.getLikes());
     }
 
     @Override
@@ -73,25 +96,38 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public Film addLikeFromUserById(Integer filmId, Integer userId) {
+    public List<Film> getFilmsByIds(List<Integer> filmIds) {
+        return filmIds.stream()
+                .filter(films::containsKey)
+                .map(films::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean addLikeFromUserById(Integer filmId, Integer userId) {
         Film film = films.get(filmId);
         if(film.getLikes() == null){
             film.setLikes(new HashSet<>());
         }
-        film.getLikes().add(userId);
+        boolean added = film.getLikes().add(userId);
         films.put(filmId, film);
 
         log.info("Пользователь с id: {} поставил like фильму: {}", userId, filmId);
-        return film;
+        return added;
     }
 
     @Override
-    public Film removeLikeFromUserById(Integer filmId, Integer userId) {
+    public boolean removeLikeFromUserById(Integer filmId, Integer userId) {
         Film film = films.get(filmId);
-        film.getLikes().remove(userId);
+        boolean removed = film.getLikes() != null && film.getLikes().remove(userId);
 
         log.info("Пользователь с id: {} убрал like фильму: {}", userId, filmId);
-        return film;
+        return removed;
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        return 0;
     }
 
     @Override
@@ -109,7 +145,7 @@ public class InMemoryFilmStorage implements FilmStorage {
 
 
     @Override
-    public List<Film> findCommon (int userId, int friendId){
+    public List<Film> findCommon (int userId, int friendId, int count){
         return null;
     }
 
@@ -9,6 +9,8 @@ import ru.yandex.practicum.filmorate.models.User;
 import ru.yandex.practicum.filmorate.storage.interf.UserStorage;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -35,7 +37,7 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public void removeUser(Integer id) {
+    public List<Integer> removeUser(Integer id) {
         User user = users.get(id);
         validUser(user);
         if(user.getFriends() != null){
@@ -50,6 +52,7 @@ public class InMemoryUserStorage implements UserStorage {
 
 
         users.remove(user.getId());
+        return new ArrayList<>();
     }
 
     @Override
@@ -65,6 +68,32 @@ public class InMemoryUserStorage implements UserStorage {
     public List<User> getUsers() {
         return new ArrayList<>(users.values()) ;
     }
+    @Override
+    public List<User> addUsers(List<User> users) {
+        return users.stream()
+                .map(this::addUser)
+                .collect(Collectors.toList());
+    }
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        getUsers().forEach(consumer);
+    }
+    @Override
+    public List<User> getUsers(int afterId, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingInt(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+    @Override
+    public List<User> getUsersByIds(List<Integer> userIds) {
+        return userIds.stream()
+                .filter(users::containsKey)
+                .map(users::get)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User getUserById(Integer userId) {
         validUser(users.get(userId));
@@ -2,11 +2,15 @@ package ru.yandex.practicum.filmorate.storage.interf;
 
 import ru.yandex.practicum.filmorate.models.Event;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 public interface EventStorage {
     void save(Map<String, Object> data);
-    List<Event> getOneById(Long id);
+    List<Event> saveAll(List<Map<String, Object>> data);
+    List<Event> getFeed(Long userId, Long beforeEventId, int limit);
+    List<Event> getFeed(Collection<Long> userIds, Long beforeEventId, int limit);
+    List<Event> getFriendsFeed(Long userId, Long beforeEventId, int limit);
     Map<String, Object> makeEvent(Long userId, Integer entityId, String eventType, String operation);
 }
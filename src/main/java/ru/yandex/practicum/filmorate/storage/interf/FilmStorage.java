@@ -4,20 +4,40 @@ import ru.yandex.practicum.filmorate.models.Film;
 
 import java.time.Year;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film addFilm(Film film);
-    void removeFilm(Integer id);
+
+    List<Film> addFilms(List<Film> films);
+    /**
+     * Удаляет фильм и возвращает id пользователей, которые его лайкали.
+     */
+    List<Integer> removeFilm(Integer id);
     Film updateFilm(Film film);
     List<Film> getFilms();
+
+    List<Film> getFilms(int afterId, int limit);
+
+    void exportFilms(Consumer<Film> consumer);
     Film getFilmById(Integer filmId);
 
-    Film addLikeFromUserById(Integer filmId, Integer userId);
+    List<Film> getFilmsByIds(List<Integer> filmIds);
+
+    /**
+     * Возвращает true, если лайк добавлен, и false, если он уже был.
+     */
+    boolean addLikeFromUserById(Integer filmId, Integer userId);
+
+    /**
+     * Возвращает true, если лайк удален, и false, если его не было.
+     */
+    boolean removeLikeFromUserById(Integer filmId, Integer userId);
 
-    Film removeLikeFromUserById(Integer filmId, Integer userId);
+    int reconcileLikeCounts();
 
-    List<Film> findCommon(int userId, int friendsId);
+    List<Film> findCommon(int userId, int friendsId, int count);
 
     List<Film> getMostPopularFilmByCountLikes(Integer count, Integer genreId, Year year);
 
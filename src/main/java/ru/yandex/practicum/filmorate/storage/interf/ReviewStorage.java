@@ -2,12 +2,15 @@ package ru.yandex.practicum.filmorate.storage.interf;
 import ru.yandex.practicum.filmorate.models.Review;
 
 import java.util.List;
-import java.util.Map;
 
 public interface ReviewStorage<T extends Review> {
     List<T> getAll();
 
-    List<T> getByParams(Map<String, Integer> params);
+    /**
+     * Не больше limit отзывов по убыванию useful, при равном useful по возрастанию review_id.
+     * Если afterUseful задан, страница начинается после отзыва (afterUseful, afterId).
+     */
+    List<T> getPage(Integer filmId, Long afterUseful, Long afterId, int limit);
 
     T create(Review review);
 
@@ -15,13 +18,16 @@ public interface ReviewStorage<T extends Review> {
 
     T getById(Long reviewId);
 
-    void addLikeToReview(Integer reviewId, Integer userId);
-    void addDisLikeToReview(Integer reviewId, Integer userId);
-    void delete(Long reviewId);
-
-    Boolean checkFilmExists(Integer filmId);
-
-    Boolean checkUserExists(Integer userId);
-
-    Boolean checkReviewExists(Integer reviewId);
+    /**
+     * Методы голосования возвращают отзыв с полезностью после голоса.
+     */
+    T addLikeToReview(Integer reviewId, Integer userId);
+    T addDisLikeToReview(Integer reviewId, Integer userId);
+    T removeLikeFromReview(Integer reviewId, Integer userId);
+    T removeDisLikeFromReview(Integer reviewId, Integer userId);
+
+    /**
+     * Удаляет отзыв и возвращает удаленную строку. Если отзыва нет, бросает EmptyResultFromDataBaseException.
+     */
+    T delete(Long reviewId);
 }
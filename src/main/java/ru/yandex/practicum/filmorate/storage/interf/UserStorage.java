@@ -5,12 +5,24 @@ import ru.yandex.practicum.filmorate.models.User;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User addUser(User user);
-    void removeUser(Integer id);
+
+    List<User> addUsers(List<User> users);
+    /**
+     * Удаляет пользователя и возвращает id фильмов, которым он ставил лайки.
+     */
+    List<Integer> removeUser(Integer id);
     User updateUser(User user);
     List<User> getUsers();
+
+    List<User> getUsers(int afterId, int limit);
+
+    List<User> getUsersByIds(List<Integer> userIds);
+
+    void exportUsers(Consumer<User> consumer);
     User getUserById(Integer userId);
 
     User addFriend(Integer userId, Integer friendId);
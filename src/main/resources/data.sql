@@ -5,8 +5,7 @@ DELETE FROM DIRECTORS;
 DELETE FROM USERS_FRIENDS;
 DELETE FROM FILM_GENRES;
 DELETE FROM reviews;
-DELETE FROM review_like;
-DELETE FROM review_dislike;
+DELETE FROM review_votes;
 DELETE FROM events;
 DELETE FROM FILM_DIRECTORS;
 
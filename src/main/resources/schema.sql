@@ -54,6 +54,9 @@ CREATE TABLE IF NOT EXISTS films
     CONSTRAINT   mpas FOREIGN KEY (mpa) REFERENCES mpa (id)
 );
 
+-- денормализованный счетчик лайков, поддерживается при добавлении/удалении лайка
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INTEGER NOT NULL DEFAULT 0;
+
 CREATE TABLE IF NOT EXISTS likes
 (
     id_user      INTEGER NOT NULL,
@@ -92,18 +95,14 @@ CREATE TABLE IF NOT EXISTS reviews (
     CONSTRAINT fk_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
-CREATE TABLE IF NOT EXISTS review_like (
-    review_id INTEGER,
-    user_id INTEGER,
-    CONSTRAINT fk_review_like_review_id FOREIGN KEY (review_id) REFERENCES reviews(review_id) ON DELETE CASCADE,
-    CONSTRAINT fk_review_like_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
-
-CREATE TABLE IF NOT EXISTS review_dislike (
-    review_id INTEGER,
-    user_id INTEGER,
-    CONSTRAINT fk_review_dislike_review_id FOREIGN KEY (review_id) REFERENCES reviews(review_id) ON DELETE CASCADE,
-    CONSTRAINT fk_review_dislike_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+CREATE TABLE IF NOT EXISTS review_votes (
+    review_id INTEGER NOT NULL,
+    user_id INTEGER NOT NULL,
+    vote SMALLINT NOT NULL,
+    CONSTRAINT fk_review_votes_review_id FOREIGN KEY (review_id) REFERENCES reviews(review_id) ON DELETE CASCADE,
+    CONSTRAINT fk_review_votes_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT review_votes_vote CHECK (vote IN (-1, 1)),
+    PRIMARY KEY (review_id, user_id)
 );
 
 CREATE TABLE IF NOT EXISTS film_directors
@@ -124,3 +123,16 @@ CREATE TABLE IF NOT EXISTS events (
     `timestamp` BIGINT,
     CONSTRAINT fk_events_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
+
+-- Вторичные индексы под все пути доступа DAO-слоя. Новые индексы добавляются в конец с номером версии,
+-- уже созданные не переименовываются: IF NOT EXISTS делает скрипт повторяемым для существующих баз.
+-- v1
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date);
+CREATE INDEX IF NOT EXISTS likes_id_film_idx ON likes (id_film, id_user);
+CREATE INDEX IF NOT EXISTS users_friends_id_user_two_idx ON users_friends (id_user_two, id_user_one);
+CREATE INDEX IF NOT EXISTS film_genres_id_genre_idx ON film_genres (id_genre, id_film);
+CREATE INDEX IF NOT EXISTS film_directors_id_director_idx ON film_directors (id_director, id_film);
+CREATE INDEX IF NOT EXISTS reviews_film_id_useful_idx ON reviews (film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS reviews_useful_idx ON reviews (useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS events_user_id_event_id_idx ON events (user_id, event_id);
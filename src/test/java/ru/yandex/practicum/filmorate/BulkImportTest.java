@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.BulkImportResult;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.models.User;
+import ru.yandex.practicum.filmorate.services.FilmService;
+import ru.yandex.practicum.filmorate.services.PopularityIndex;
+import ru.yandex.practicum.filmorate.services.UserService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BulkImportTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final PopularityIndex popularityIndex;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM FILM_GENRES");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        popularityIndex.rebuild();
+    }
+
+    @Test
+    public void importFilmsReportsBadRowsAndKeepsGoodOnes() throws IOException {
+        String ndjson = film("Маска", "1994-07-29", 1) + "\n" +
+                "{\"name\": \"Сломанный\"\n" +
+                film("Прибытие поезда", "1800-01-01", 1) + "\n" +
+                "\n" +
+                film("Тупой и еще тупее", "1994-12-16", 2) + "\n" +
+                film("Несуществующий жанр", "2000-01-01", 100) + "\n" +
+                film("Вечное сияние чистого разума", "2004-03-19", 2) + "\n";
+
+        BulkImportResult result = filmService.importFilms(toStream(ndjson), 2);
+
+        assertEquals(6, result.getTotal());
+        assertEquals(3, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(2, 3, 6), result.getErrors().stream()
+                .map(BulkImportResult.RowError::getLine)
+                .collect(Collectors.toList()));
+        assertEquals(List.of("Маска", "Тупой и еще тупее", "Вечное сияние чистого разума"),
+                filmService.getFilms(0, 10).stream().map(Film::getName).collect(Collectors.toList()));
+        assertEquals(2, filmService.getFilmById(2).getGenres().get(0).getId());
+        assertEquals(3, filmService.getMostPopularFilmByCountLikes(10, null, null).size());
+    }
+
+    @Test
+    public void importUsersReportsDuplicateEmail() throws IOException {
+        String ndjson = user("jim@email.com", "Jim", "") + "\n" +
+                user("jeff@email.com", "Jeff", "Джефф") + "\n" +
+                user("jim@email.com", "Jim2", "Джим") + "\n" +
+                user("wrong-email", "Wrong", "Неверный") + "\n" +
+                "{\"email\": \"nobody@email.com\", \"login\": \"Nobody\", \"name\": \"Без даты\"}\n";
+
+        BulkImportResult result = userService.importUsers(toStream(ndjson), null);
+
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(3, 4, 5), result.getErrors().stream()
+                .map(BulkImportResult.RowError::getLine)
+                .collect(Collectors.toList()));
+        assertEquals(List.of("Jim", "Джефф"),
+                userService.getUsers(0, 10).stream().map(User::getName).collect(Collectors.toList()));
+    }
+
+    private static String film(String name, String releaseDate, int genreId) {
+        return "{\"name\": \"" + name + "\", \"description\": \"Описание\", \"releaseDate\": \"" + releaseDate +
+                "\", \"duration\": 100, \"mpa\": {\"id\": 1}, \"genres\": [{\"id\": " + genreId + "}]}";
+    }
+
+    private static String user(String email, String login, String name) {
+        return "{\"email\": \"" + email + "\", \"login\": \"" + login + "\", \"name\": \"" + name +
+                "\", \"birthday\": \"1962-01-17\"}";
+    }
+
+    private static ByteArrayInputStream toStream(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}
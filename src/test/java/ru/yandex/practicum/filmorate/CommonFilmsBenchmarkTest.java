@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoFilmStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Замер /films/common на 1 000 000 лайков. Запуск: mvn test -Dbenchmark=true -Dtest=CommonFilmsBenchmarkTest
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureTestDatabase
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CommonFilmsBenchmarkTest {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 5_000;
+    private static final int LIKES_PER_USER = 100;
+    private static final int ITERATIONS = 1_000;
+    // запрос идет по индексу лайков пользователя, а не по всей таблице likes
+    private static final long MAX_MICROS_PER_QUERY = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DaoFilmStorage filmStorage;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 " +
+                "FROM SYSTEM_RANGE(1, ?)", FILMS);
+        // у пользователей u и u + FILMS одинаковые наборы лайков, у соседних u и u + 1 - непересекающиеся
+        jdbcTemplate.update("INSERT INTO likes(id_user, id_film) " +
+                "SELECT u.X, MOD(u.X + k.X * ?, ?) + 1 " +
+                "FROM SYSTEM_RANGE(1, ?) AS u, SYSTEM_RANGE(0, ?) AS k",
+                FILMS / LIKES_PER_USER, FILMS, USERS, LIKES_PER_USER - 1);
+        filmStorage.reconcileLikeCounts();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM LIKES");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+    }
+
+    @Test
+    public void findCommonOnMillionLikes() {
+        assertEquals(USERS * LIKES_PER_USER,
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class));
+        assertEquals(10, filmStorage.findCommon(1, 1 + FILMS, 10).size());
+        assertEquals(0, filmStorage.findCommon(1, 2, 10).size());
+
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            filmStorage.findCommon(1 + i, 1 + i + FILMS, 10);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            int userId = 1 + i % FILMS;
+            filmStorage.findCommon(userId, userId + FILMS, 10);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long microsPerQuery = elapsed / 1_000 / ITERATIONS;
+        log.info("findCommon на {} лайках: {} мкс на запрос", USERS * LIKES_PER_USER, microsPerQuery);
+        assertTrue(microsPerQuery < MAX_MICROS_PER_QUERY,
+                "findCommon медленнее " + MAX_MICROS_PER_QUERY + " мкс на запрос: " + microsPerQuery);
+    }
+}
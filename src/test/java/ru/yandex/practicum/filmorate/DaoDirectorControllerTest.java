@@ -8,6 +8,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.models.Director;
+import ru.yandex.practicum.filmorate.services.DirectorService;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoDirectorStorage;
 
 import java.util.List;
@@ -20,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 public class DaoDirectorControllerTest {
     private final DaoDirectorStorage directorStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final DirectorService directorService;
     Director director1 = Director.builder()
             .id(1)
             .name("ДжеймсКамерун")
@@ -44,6 +46,7 @@ public class DaoDirectorControllerTest {
         jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE DIRECTORS ALTER COLUMN ID RESTART WITH 1");
+        directorService.getDirectorCache().refresh();
     }
 
     @Test
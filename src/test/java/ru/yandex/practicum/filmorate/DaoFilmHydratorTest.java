@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.models.*;
+import ru.yandex.practicum.filmorate.services.DirectorService;
+import ru.yandex.practicum.filmorate.services.GenreService;
+import ru.yandex.practicum.filmorate.services.MpaService;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoDirectorStorage;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoFilmHydrator;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoFilmStorage;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoUserStorage;
+import ru.yandex.practicum.filmorate.storage.daoImpl.FilmSearchIndex;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class DaoFilmHydratorTest {
+    // базовый запрос + лайки, жанры и режиссеры; MPA и жанры берутся из кеша справочников
+    private static final int HYDRATION_QUERIES = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DaoFilmStorage filmStorage;
+    private final DaoUserStorage userStorage;
+    private final DaoDirectorStorage directorStorage;
+    private final MpaService mpaService;
+    private final GenreService genreService;
+    private final DirectorService directorService;
+    private final FilmSearchIndex filmSearchIndex;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM LIKES");
+        jdbcTemplate.update("DELETE FROM DIRECTORS");
+        jdbcTemplate.update("DELETE FROM FILM_GENRES");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE DIRECTORS ALTER COLUMN ID RESTART WITH 1");
+        directorService.getDirectorCache().refresh();
+    }
+
+    @Test
+    public void getFilmsQueryCountDoesNotDependOnFilmCount() {
+        AtomicInteger counter = new AtomicInteger();
+        JdbcTemplate countingJdbcTemplate = new JdbcTemplate(countingDataSource(jdbcTemplate.getDataSource(), counter));
+        DaoFilmStorage countingFilmStorage = new DaoFilmStorage(countingJdbcTemplate, genreService, directorService,
+                new DaoFilmHydrator(countingJdbcTemplate, mpaService, genreService, directorService), filmSearchIndex);
+
+        Director director = directorStorage.addDirector(Director.builder().name("Режиссер").build());
+        User user = userStorage.addUser(User.builder()
+                .email("jim@email.com")
+                .login("Jim")
+                .name("Джим")
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+        addFilms(3, director, user);
+
+        counter.set(0);
+        List<Film> films = countingFilmStorage.getFilms();
+        int queriesForSmallCatalog = counter.get();
+
+        assertEquals(3, films.size());
+        assertEquals(HYDRATION_QUERIES, queriesForSmallCatalog);
+
+        addFilms(20, director, user);
+
+        counter.set(0);
+        films = countingFilmStorage.getFilms();
+
+        assertEquals(23, films.size());
+        assertEquals(queriesForSmallCatalog, counter.get(), "Число запросов растет вместе с числом фильмов");
+        assertEquals(List.of(director), films.get(22).getDirectors());
+        assertEquals(1, films.get(22).getGenres().size());
+        assertEquals("PG", films.get(22).getMpa().getName());
+        assertEquals(1, films.get(22).getLikes().size());
+    }
+
+    @Test
+    public void hydratedFilmEqualsFilmReadById() {
+        Director director = directorStorage.addDirector(Director.builder().name("Режиссер").build());
+        User user = userStorage.addUser(User.builder()
+                .email("jim@email.com")
+                .login("Jim")
+                .name("Джим")
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+        addFilms(2, director, user);
+
+        List<Film> films = filmStorage.getFilms();
+
+        assertEquals(filmStorage.getFilmById(1), films.get(0));
+        assertEquals(filmStorage.getFilmById(2), films.get(1));
+    }
+
+    @Test
+    public void exportStreamsSameFilmsAsGetFilms() {
+        User user = userStorage.addUser(User.builder()
+                .email("jim@email.com")
+                .login("Jim")
+                .name("Джим")
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'Фильм ' || X, 'Описание', DATE '1994-12-14', 101, 0, 2 FROM SYSTEM_RANGE(1, 1201)");
+        jdbcTemplate.update("INSERT INTO film_genres(id_film, id_genre) SELECT X, 1 FROM SYSTEM_RANGE(1, 1201)");
+        jdbcTemplate.update("INSERT INTO likes(id_user, id_film) SELECT ?, X FROM SYSTEM_RANGE(1, 1201, 3)",
+                user.getId());
+
+        List<Film> exported = new ArrayList<>();
+        filmStorage.exportFilms(exported::add);
+
+        List<Film> films = new ArrayList<>(filmStorage.getFilms());
+        films.sort(Comparator.comparing(Film::getId));
+        assertEquals(1201, exported.size());
+        assertEquals(films, exported);
+    }
+
+    private void addFilms(int count, Director director, User user) {
+        for (int i = 0; i < count; i++) {
+            Film film = filmStorage.addFilm(Film.builder()
+                    .name("Фильм " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.of(1994, 12, 14))
+                    .duration(101)
+                    .mpa(Mpa.builder().id(2).name("PG").build())
+                    .genres(List.of(Genre.builder().id(1).name("Комедия").build()))
+                    .directors(List.of(director))
+                    .build());
+            filmStorage.addLikeFromUserById(film.getId(), user.getId());
+        }
+    }
+
+    private static DataSource countingDataSource(DataSource dataSource, AtomicInteger counter) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement")
+                                    || method.getName().equals("createStatement")) {
+                                counter.incrementAndGet();
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.services.EventWriter;
+import ru.yandex.practicum.filmorate.storage.interf.EventStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class EventWriterTest {
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 2_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventWriter eventWriter;
+    private final EventStorage eventStorage;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventWriter.flush();
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+    }
+
+    @Test
+    public void concurrentSubmitsAreAllWrittenInOrderPerUser() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 1; t <= THREADS; t++) {
+            long userId = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 1; i <= EVENTS_PER_THREAD; i++) {
+                    eventWriter.submit(eventStorage.makeEvent(userId, i, "LIKE", "ADD"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        eventWriter.flush();
+
+        assertEquals(0, eventWriter.getQueueDepth());
+        assertEquals(THREADS * EVENTS_PER_THREAD,
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class));
+        List<Integer> entityIds = jdbcTemplate.queryForList(
+                "SELECT entity_id FROM events WHERE user_id = 1 ORDER BY event_id", Integer.class);
+        assertEquals(EVENTS_PER_THREAD, entityIds.size());
+        for (int i = 0; i < entityIds.size(); i++) {
+            assertEquals(i + 1, entityIds.get(i));
+        }
+    }
+}
@@ -8,11 +8,16 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.controllers.FilmController;
+import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.models.*;
+import ru.yandex.practicum.filmorate.services.DirectorService;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoDirectorStorage;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoFilmStorage;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoUserStorage;
+import ru.yandex.practicum.filmorate.storage.daoImpl.FilmSearchIndex;
 
 import java.time.LocalDate;
 import java.time.Year;
@@ -20,6 +25,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,6 +35,10 @@ import static org.junit.jupiter.api.Assertions.*;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class FilmControllerWithDaoTest {
     private final JdbcTemplate jdbcTemplate;
+    private final DirectorService directorService;
+    private final FilmController filmController;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmSearchIndex filmSearchIndex;
     private final DaoFilmStorage filmStorage;
     private final DaoUserStorage userStorage;
     private final DaoDirectorStorage directorStorage;
@@ -108,6 +119,7 @@ public class FilmControllerWithDaoTest {
         jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE DIRECTORS ALTER COLUMN ID RESTART WITH 1");
+        directorService.getDirectorCache().refresh();
     }
 
     @Test
@@ -148,6 +160,86 @@ public class FilmControllerWithDaoTest {
         assertEquals("Тупой и еще тупее", filmStorage.getFilmById(1).getName());
     }
 
+    @Test
+    public void writtenFilmEqualsFilmReadByIdTest() {
+        Director director = directorStorage.addDirector(Director.builder().name("Режиссер").build());
+        firstFilm = Film.builder()
+                .description("Описание")
+                .releaseDate(LocalDate.of(1994, 12, 14))
+                .duration(101)
+                .name("Маска")
+                .mpa(Mpa.builder().id(2).build())
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build()))
+                .directors(List.of(Director.builder().id(director.getId()).build()))
+                .build();
+        Film added = filmStorage.addFilm(firstFilm);
+
+        assertEquals(filmStorage.getFilmById(added.getId()), added);
+
+        userStorage.addUser(User.builder()
+                .email("jim@email.com")
+                .login("Jim")
+                .name("Джим")
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+        filmStorage.addLikeFromUserById(added.getId(), 1);
+        firstFilm.setName("Маска 2");
+        Film updated = filmStorage.updateFilm(firstFilm);
+
+        assertEquals(filmStorage.getFilmById(added.getId()), updated);
+        assertEquals(Set.of(1), updated.getLikes());
+    }
+
+    @Test
+    public void failedFilmUpdateIsRolledBackTest() {
+        firstFilm = Film.builder()
+                .description("Описание")
+                .releaseDate(LocalDate.of(1994, 12, 14))
+                .duration(101)
+                .name("Маска")
+                .mpa(listMpa.get(1))
+                .genres(List.of(listGenre.get(0)))
+                .build();
+        filmStorage.addFilm(firstFilm);
+
+        firstFilm.setName("Маска 2");
+        firstFilm.setGenres(List.of(Genre.builder().id(100).build()));
+
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.updateFilm(firstFilm));
+        assertEquals("Маска", filmStorage.getFilmById(1).getName());
+        assertEquals(List.of(listGenre.get(0)), filmStorage.getFilmById(1).getGenres());
+    }
+
+    @Test
+    public void updateFilmGenresAndDirectorsByDiffTest() {
+        Director first = directorStorage.addDirector(Director.builder().name("Первый").build());
+        Director second = directorStorage.addDirector(Director.builder().name("Второй").build());
+        firstFilm = Film.builder()
+                .description("Описание")
+                .releaseDate(LocalDate.of(1994, 12, 14))
+                .duration(101)
+                .name("Маска")
+                .mpa(listMpa.get(1))
+                .genres(List.of(listGenre.get(0), listGenre.get(1)))
+                .directors(List.of(first))
+                .build();
+        filmStorage.addFilm(firstFilm);
+
+        firstFilm.setGenres(List.of(listGenre.get(1), listGenre.get(2), listGenre.get(2)));
+        firstFilm.setDirectors(List.of(second));
+        Film updated = filmStorage.updateFilm(firstFilm);
+
+        assertEquals(List.of(listGenre.get(1), listGenre.get(2)), updated.getGenres());
+        assertEquals(List.of(second), updated.getDirectors());
+
+        firstFilm.setGenres(null);
+        firstFilm.setDirectors(new ArrayList<>());
+        updated = filmStorage.updateFilm(firstFilm);
+
+        assertTrue(updated.getGenres().isEmpty());
+        assertTrue(updated.getDirectors().isEmpty());
+    }
+
     @Test
     public void addFilmWithWrongDateTest() {
         firstFilm = Film.builder()
@@ -209,6 +301,27 @@ public class FilmControllerWithDaoTest {
         assertEquals(2, filmStorage.getFilms().size());
     }
 
+    @Test
+    public void getFilmsPageTest() {
+        for (int i = 1; i <= 5; i++) {
+            filmStorage.addFilm(Film.builder()
+                    .description("Описание")
+                    .releaseDate(LocalDate.of(1994, 12, i))
+                    .duration(100)
+                    .name("Фильм " + i)
+                    .mpa(listMpa.get(1))
+                    .build());
+        }
+
+        List<Film> firstPage = filmStorage.getFilms(0, 3);
+        List<Film> secondPage = filmStorage.getFilms(firstPage.get(2).getId(), 3);
+
+        assertEquals(List.of(1, 2, 3), firstPage.stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(List.of(4, 5), secondPage.stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(filmStorage.getFilmById(4), secondPage.get(0));
+        assertTrue(filmStorage.getFilms(5, 3).isEmpty());
+    }
+
     @Test
     public void getFilmByIdTest() {
         firstFilm = Film.builder()
@@ -796,4 +909,72 @@ public class FilmControllerWithDaoTest {
 
         assertTrue(result.contains(firstFilm));
     }
+
+    @Test
+    public void searchFollowsDirectorRenameAndRanksByLikes() {
+        Director director = directorStorage.addDirector(Director.builder().name("Кэмерон").build());
+
+        firstFilm = Film.builder()
+                .description("Описание")
+                .releaseDate(LocalDate.of(1993, 1, 28))
+                .duration(101)
+                .name("Терминатор")
+                .mpa(listMpa.get(1))
+                .directors(List.of(director))
+                .build();
+        secondFilm = Film.builder()
+                .description("Описание")
+                .releaseDate(LocalDate.of(1991, 7, 3))
+                .duration(137)
+                .name("Терминатор 2")
+                .mpa(listMpa.get(1))
+                .build();
+
+        filmStorage.addFilm(firstFilm);
+        filmStorage.addFilm(secondFilm);
+        userStorage.addUser(User.builder()
+                .email("jim@email.com")
+                .login("Jim")
+                .name("Джим")
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+        filmStorage.addLikeFromUserById(2, 1);
+
+        assertEquals(List.of(2, 1), filmStorage.searchFilms("терминатор", "title").stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+
+        directorStorage.updateDirector(Director.builder().id(director.getId()).name("Джеймс Кэмерон").build());
+
+        assertEquals(1, filmStorage.searchFilms("джеймс", "director").size());
+        assertTrue(filmStorage.searchFilms("ДжеймсКамерун", "director").isEmpty());
+
+        directorStorage.removeDirector(director.getId());
+
+        assertTrue(filmStorage.searchFilms("джеймс", "director").isEmpty());
+    }
+
+    @Test
+    public void commonFilmsRejectSameUserAndEmptyCount() {
+        assertEquals("friendId", assertThrows(IncorrectParameterException.class,
+                () -> filmController.getCommonFilms(1, 1, 10)).getParameter());
+        assertEquals("count", assertThrows(IncorrectParameterException.class,
+                () -> filmController.getCommonFilms(1, 2, 0)).getParameter());
+    }
+
+    @Test
+    public void rolledBackFilmIsNotSearchable() {
+        transactionTemplate.executeWithoutResult(status -> {
+            filmStorage.addFilm(Film.builder()
+                    .description("Описание")
+                    .releaseDate(LocalDate.of(1984, 10, 26))
+                    .duration(107)
+                    .name("Терминатор")
+                    .mpa(listMpa.get(1))
+                    .build());
+            status.setRollbackOnly();
+        });
+
+        assertTrue(filmSearchIndex.search("терминатор", true, false).isEmpty());
+    }
 }
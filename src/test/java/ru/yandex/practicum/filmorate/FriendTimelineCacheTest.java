@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Event;
+import ru.yandex.practicum.filmorate.services.EventWriter;
+import ru.yandex.practicum.filmorate.services.FriendTimelineCache;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoEventStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FriendTimelineCacheTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final DaoEventStorage eventStorage;
+    private final EventWriter eventWriter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FriendTimelineCache timelineCache;
+
+    @BeforeEach
+    void setUp() {
+        eventWriter.flush();
+        // контекст и база общие с другими тестами: id событий должны начинаться с 1
+        tearDown();
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 4)");
+        // у пользователя 3 два подписчика, при пороге 1 он знаменитость
+        jdbcTemplate.update("INSERT INTO users_friends(id_user_one, id_user_two) VALUES (1, 2), (1, 3), (4, 3)");
+        meterRegistry = new SimpleMeterRegistry();
+        timelineCache = new FriendTimelineCache(jdbcTemplate, eventStorage, meterRegistry, 3, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+    }
+
+    @Test
+    public void feedMergesRingBufferWithCelebrityEvents() {
+        assertEquals(List.of(), getEventIds(timelineCache.getFeed(1L, null, 10)));
+
+        List<Map<String, Object>> events = new ArrayList<>();
+        long[] authors = {2, 3, 2, 3, 2, 2, 4};
+        for (int i = 0; i < authors.length; i++) {
+            events.add(eventStorage.makeEvent(authors[i], i + 1, "LIKE", "ADD"));
+        }
+        timelineCache.publish(eventStorage.saveAll(events));
+
+        double cacheReadsBefore = getCacheReads();
+        assertEquals(List.of(4L, 5L, 6L), getEventIds(timelineCache.getFeed(1L, null, 3)));
+        assertEquals(cacheReadsBefore + 1, getCacheReads());
+        // в буфере только три последних события пользователя 2, остальное читается из базы
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), getEventIds(timelineCache.getFeed(1L, null, 10)));
+        assertEquals(List.of(2L, 3L), getEventIds(timelineCache.getFeed(1L, 4L, 2)));
+        assertEquals(getEventIds(eventStorage.getFriendsFeed(1L, null, 10)),
+                getEventIds(timelineCache.getFeed(1L, null, 10)));
+
+        jdbcTemplate.update("DELETE FROM users_friends WHERE id_user_one = 1 AND id_user_two = 2");
+        timelineCache.onFriendshipChanged(1, 2);
+
+        assertEquals(List.of(2L, 4L), getEventIds(timelineCache.getFeed(1L, null, 10)));
+    }
+
+    private double getCacheReads() {
+        return meterRegistry.get("filmorate.timeline.reads").tag("source", "cache").counter().count();
+    }
+
+    private static List<Long> getEventIds(List<Event> events) {
+        return events.stream().map(Event::getEventId).collect(Collectors.toList());
+    }
+}
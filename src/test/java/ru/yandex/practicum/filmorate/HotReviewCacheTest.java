@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.models.Review;
+import ru.yandex.practicum.filmorate.services.HotReviewCache;
+import ru.yandex.practicum.filmorate.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "filmorate.reviews.cache.top-n=5",
+        "filmorate.reviews.cache.max-reviews=12"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class HotReviewCacheTest {
+    private static final int USERS = 20;
+    private static final int REVIEWS_PER_FILM = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReviewService reviewService;
+    private final HotReviewCache hotReviewCache;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        hotReviewCache.clear();
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, 3)");
+        jdbcTemplate.update("INSERT INTO reviews(user_id, film_id, content, is_positive, useful) " +
+                "SELECT MOD(X - 1, ?) + 1, (X - 1) / ? + 1, 'Отзыв', TRUE, 0 FROM SYSTEM_RANGE(1, ?)",
+                REVIEWS_PER_FILM, REVIEWS_PER_FILM, 3 * REVIEWS_PER_FILM);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hotReviewCache.clear();
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE REVIEWS ALTER COLUMN REVIEW_ID RESTART WITH 1");
+    }
+
+    @Test
+    public void votesReorderCachedReviewsInPlace() {
+        reviewService.findReviewsByParams(1, null, null, 5);
+        double hitsBefore = hits();
+
+        for (int step = 0; step < 60; step++) {
+            int reviewId = step * 7 % REVIEWS_PER_FILM + 1;
+            int userId = step % USERS + 1;
+            if (step % 3 != 0) {
+                reviewService.addLikeToReview(reviewId, userId);
+            } else {
+                reviewService.addDisLikeToReview(reviewId, userId);
+            }
+            assertEquals(topFromDataBase(5), ids(reviewService.findReviewsByParams(1, null, null, 5)));
+        }
+
+        assertTrue(hits() - hitsBefore > 30, "Голоса сбрасывают кеш вместо перестановки");
+        assertEquals(topFromDataBase(REVIEWS_PER_FILM), readAllPages());
+    }
+
+    @Test
+    public void leastRecentlyUsedFilmIsEvicted() {
+        reviewService.findReviewsByParams(1, null, null, 5);
+        reviewService.findReviewsByParams(2, null, null, 5);
+        reviewService.findReviewsByParams(1, null, null, 5);
+        reviewService.findReviewsByParams(3, null, null, 5);
+        assertEquals(10, hotReviewCache.getSize());
+
+        double hitsBefore = hits();
+        double missesBefore = misses();
+        reviewService.findReviewsByParams(1, null, null, 5);
+        reviewService.findReviewsByParams(3, null, null, 5);
+        assertEquals(hitsBefore + 2, hits());
+        reviewService.findReviewsByParams(2, null, null, 5);
+        assertEquals(missesBefore + 1, misses());
+    }
+
+    @Test
+    public void parallelVotersKeepCachedPageEqualToDataBase() throws Exception {
+        reviewService.findReviewsByParams(1, null, null, 5);
+
+        // только лайки: отзывы префикса не опускаются, запись не укорачивается и читается из кеша
+        List<Callable<Void>> likes = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            for (int reviewId = 1; reviewId <= REVIEWS_PER_FILM; reviewId++) {
+                if ((userId + reviewId) % 3 != 0) {
+                    int voter = userId;
+                    int review = reviewId;
+                    for (int i = 0; i < 2; i++) {
+                        likes.add(() -> {
+                            reviewService.addLikeToReview(review, voter);
+                            return null;
+                        });
+                    }
+                }
+            }
+        }
+        runInParallel(likes);
+
+        double hitsBefore = hits();
+        assertEquals(pageFromDataBase(), page(reviewService.findReviewsByParams(1, null, null, 5)));
+        assertEquals(hitsBefore + 1, hits());
+
+        List<Callable<Void>> votes = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            for (int reviewId = 1; reviewId <= REVIEWS_PER_FILM; reviewId++) {
+                int voter = userId;
+                int review = reviewId;
+                int kind = (userId * reviewId) % 4;
+                votes.add(() -> {
+                    if (kind == 0) {
+                        reviewService.addDisLikeToReview(review, voter);
+                    } else if (kind == 1) {
+                        reviewService.removeLikeFromReview(review, voter);
+                    } else {
+                        reviewService.addLikeToReview(review, voter);
+                    }
+                    return null;
+                });
+            }
+        }
+        Collections.shuffle(votes, new Random(7));
+        runInParallel(votes);
+
+        assertEquals(pageFromDataBase(), page(reviewService.findReviewsByParams(1, null, null, 5)));
+    }
+
+    @Test
+    public void voteIsCachedOnlyAfterCommit() {
+        reviewService.findReviewsByParams(1, null, null, 5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            reviewService.addLikeToReview(2, 1);
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(reviewService.findReviewsByParams(1, null, null, 5)));
+        });
+
+        assertEquals(List.of(2L, 1L, 3L, 4L, 5L), ids(reviewService.findReviewsByParams(1, null, null, 5)));
+        assertEquals(pageFromDataBase(), page(reviewService.findReviewsByParams(1, null, null, 5)));
+    }
+
+    @Test
+    public void rolledBackVoteIsDroppedFromCache() {
+        reviewService.findReviewsByParams(1, null, null, 5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            reviewService.addLikeToReview(8, 1);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, hotReviewCache.getSize());
+        assertEquals(pageFromDataBase(), page(reviewService.findReviewsByParams(1, null, null, 5)));
+    }
+
+    private List<Long> readAllPages() {
+        List<Long> reviewIds = new ArrayList<>();
+        Long afterUseful = null;
+        Long afterId = null;
+        List<Review> page;
+        do {
+            page = reviewService.findReviewsByParams(1, afterUseful, afterId, 3);
+            reviewIds.addAll(ids(page));
+            if (!page.isEmpty()) {
+                afterUseful = page.get(page.size() - 1).getUseful();
+                afterId = page.get(page.size() - 1).getReviewId();
+            }
+        } while (page.size() == 3);
+        return reviewIds;
+    }
+
+    private List<Long> topFromDataBase(int count) {
+        return jdbcTemplate.queryForList("SELECT review_id FROM reviews WHERE film_id = 1 " +
+                "ORDER BY useful DESC, review_id LIMIT ?", Long.class, count);
+    }
+
+    private List<List<Long>> pageFromDataBase() {
+        return jdbcTemplate.query("SELECT review_id, useful FROM reviews WHERE film_id = 1 " +
+                        "ORDER BY useful DESC, review_id LIMIT 5",
+                (rs, rowNum) -> List.of(rs.getLong("review_id"), rs.getLong("useful")));
+    }
+
+    private static List<List<Long>> page(List<Review> reviews) {
+        return reviews.stream()
+                .map(review -> List.of(review.getReviewId(), review.getUseful()))
+                .collect(Collectors.toList());
+    }
+
+    private static void runInParallel(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private static List<Long> ids(List<Review> reviews) {
+        return reviews.stream().map(Review::getReviewId).collect(Collectors.toList());
+    }
+
+    private double hits() {
+        return meterRegistry.counter("filmorate.reviews.cache.requests", "result", "hit").count();
+    }
+
+    private double misses() {
+        return meterRegistry.counter("filmorate.reviews.cache.requests", "result", "miss").count();
+    }
+}
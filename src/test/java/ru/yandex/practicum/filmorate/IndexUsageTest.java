@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.services.DirectorService;
+import ru.yandex.practicum.filmorate.services.GenreService;
+import ru.yandex.practicum.filmorate.services.MpaService;
+import ru.yandex.practicum.filmorate.storage.daoImpl.*;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Year;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Перехватывает все SELECT, UPDATE и DELETE, которые выполняют DAO, и прогоняет их через EXPLAIN.
+ * Полный проход по таблице допустим только в запросах без WHERE (выгрузка всего списка).
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class IndexUsageTest {
+    private static final int ROWS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MpaService mpaService;
+    private final GenreService genreService;
+    private final DirectorService directorService;
+    private final FilmSearchIndex filmSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        tearDown();
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATEADD(YEAR, MOD(X, 20), DATE '1990-01-01'), 100, 0, 1 " +
+                "FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO directors(name) SELECT 'director' || X FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.update("INSERT INTO film_genres(id_film, id_genre) SELECT X, MOD(X, 6) + 1 FROM SYSTEM_RANGE(1, ?)",
+                ROWS);
+        jdbcTemplate.update("INSERT INTO film_directors(id_film, id_director) " +
+                "SELECT X, MOD(X, 10) + 1 FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO likes(id_user, id_film) " +
+                "SELECT u.X, MOD(u.X + k.X * 7, ?) + 1 FROM SYSTEM_RANGE(1, ?) AS u, SYSTEM_RANGE(0, 9) AS k",
+                ROWS, ROWS);
+        jdbcTemplate.update("INSERT INTO users_friends(id_user_one, id_user_two) " +
+                "SELECT u.X, MOD(u.X + k.X, ?) + 1 FROM SYSTEM_RANGE(1, ?) AS u, SYSTEM_RANGE(1, 5) AS k",
+                ROWS, ROWS);
+        jdbcTemplate.update("INSERT INTO reviews(user_id, film_id, content, is_positive, useful) " +
+                "SELECT X, MOD(X, 20) + 1, 'Отзыв', TRUE, MOD(X, 7) FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("INSERT INTO events(user_id, entity_id, event_type, operation, `timestamp`) " +
+                "SELECT MOD(X, 20) + 1, X, 'LIKE', 'ADD', X FROM SYSTEM_RANGE(1, ?)", ROWS);
+        jdbcTemplate.update("UPDATE films SET like_count = (SELECT COUNT(*) FROM likes WHERE likes.id_film = films.id)");
+        directorService.getDirectorCache().refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM DIRECTORS");
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE DIRECTORS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE REVIEWS ALTER COLUMN REVIEW_ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
+        directorService.getDirectorCache().refresh();
+        filmSearchIndex.rebuild(List.of());
+    }
+
+    @Test
+    public void daoQueriesDoNotScanWholeTables() {
+        List<CapturedQuery> queries = new ArrayList<>();
+        JdbcTemplate capturingJdbcTemplate = new JdbcTemplate(capturingDataSource(jdbcTemplate.getDataSource(), queries));
+        DaoFilmHydrator filmHydrator = new DaoFilmHydrator(capturingJdbcTemplate, mpaService, genreService, directorService);
+        DaoFilmStorage filmStorage = new DaoFilmStorage(capturingJdbcTemplate, genreService, directorService,
+                filmHydrator, filmSearchIndex);
+        DaoUserStorage userStorage = new DaoUserStorage(capturingJdbcTemplate, filmHydrator);
+        DaoReviewStorage reviewStorage = new DaoReviewStorage(capturingJdbcTemplate);
+        DaoEventStorage eventStorage = new DaoEventStorage(capturingJdbcTemplate);
+        filmStorage.rebuildSearchIndex();
+
+        filmStorage.getFilms();
+        filmStorage.getFilms(50, 10);
+        filmStorage.getFilmById(1);
+        filmStorage.getFilmsByIds(List.of(3, 1, 2));
+        filmStorage.getMostPopularFilmByCountLikes(10, null, null);
+        filmStorage.getMostPopularFilmByCountLikes(10, 1, null);
+        filmStorage.getMostPopularFilmByCountLikes(10, null, Year.of(2000));
+        filmStorage.getMostPopularFilmByCountLikes(10, 1, Year.of(2000));
+        filmStorage.findCommon(1, 2, 10);
+        filmStorage.getSortedFilmByDirector(1, "likes");
+        filmStorage.getSortedFilmByDirector(1, "year");
+        filmStorage.searchFilms("film1", "title,director");
+
+        userStorage.getUsers(50, 10);
+        userStorage.getUserById(1);
+        userStorage.getUsersByIds(List.of(3, 1, 2));
+        userStorage.getFriendsById(1);
+        userStorage.getCommonFriends(1, 2);
+        userStorage.getRecommendations(1);
+
+        reviewStorage.getById(1L);
+        reviewStorage.getPage(1, null, null, 5);
+        reviewStorage.getPage(1, 3L, 10L, 5);
+        reviewStorage.getPage(null, null, null, 10);
+        reviewStorage.getPage(null, 3L, 10L, 10);
+        reviewStorage.addLikeToReview(1, 2);
+        reviewStorage.addDisLikeToReview(1, 2);
+        reviewStorage.removeDisLikeFromReview(1, 2);
+
+        eventStorage.getFeed(1L, null, 10);
+        eventStorage.getFeed(1L, 100L, 10);
+        eventStorage.getFriendsFeed(1L, 100L, 10);
+
+        List<String> violations = new ArrayList<>();
+        for (CapturedQuery query : queries) {
+            if (!isExplainable(query.sql)) {
+                continue;
+            }
+            String plan = jdbcTemplate.queryForObject("EXPLAIN " + query.sql, String.class, query.getArgs());
+            if (plan != null && plan.contains("tableScan") && !isScanAllowed(query.sql)) {
+                violations.add(query.sql + "\n" + plan);
+            }
+        }
+
+        assertTrue(queries.size() > 20, "Запросы DAO не перехвачены");
+        assertTrue(violations.isEmpty(), "Полный проход по таблице:\n" + String.join("\n\n", violations));
+    }
+
+    private static boolean isExplainable(String sql) {
+        String statement = sql.trim().toUpperCase(Locale.ROOT);
+        return statement.startsWith("SELECT") || statement.startsWith("UPDATE") || statement.startsWith("DELETE");
+    }
+
+    private static boolean isScanAllowed(String sql) {
+        return !sql.toUpperCase(Locale.ROOT).contains(" WHERE ");
+    }
+
+    private static DataSource capturingDataSource(DataSource dataSource, List<CapturedQuery> queries) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            Object result = invoke(method, connection, args);
+                            if (method.getName().equals("prepareStatement")) {
+                                return capturingPreparedStatement((PreparedStatement) result, (String) args[0],
+                                        queries);
+                            }
+                            if (method.getName().equals("createStatement")) {
+                                return capturingStatement((Statement) result, queries);
+                            }
+                            return result;
+                        });
+            }
+        };
+    }
+
+    private static PreparedStatement capturingPreparedStatement(PreparedStatement statement, String sql,
+                                                                List<CapturedQuery> queries) {
+        CapturedQuery query = new CapturedQuery(sql);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer) {
+                        query.args.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+                    } else if (method.getName().equals("executeQuery")
+                            || method.getName().equals("executeUpdate")) {
+                        queries.add(query.copy());
+                    }
+                    return invoke(method, statement, args);
+                });
+    }
+
+    private static Statement capturingStatement(Statement statement, List<CapturedQuery> queries) {
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("executeQuery") || method.getName().equals("executeUpdate")) {
+                        queries.add(new CapturedQuery((String) args[0]));
+                    }
+                    return invoke(method, statement, args);
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class CapturedQuery {
+        private final String sql;
+        private final SortedMap<Integer, Object> args = new TreeMap<>();
+
+        private CapturedQuery(String sql) {
+            this.sql = sql;
+        }
+
+        private CapturedQuery copy() {
+            CapturedQuery copy = new CapturedQuery(sql);
+            copy.args.putAll(args);
+            return copy;
+        }
+
+        private Object[] getArgs() {
+            return args.values().toArray();
+        }
+    }
+}
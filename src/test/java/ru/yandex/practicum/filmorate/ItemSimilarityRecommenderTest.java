@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.services.FilmService;
+import ru.yandex.practicum.filmorate.services.ItemSimilarityRecommender;
+import ru.yandex.practicum.filmorate.services.PopularityIndex;
+import ru.yandex.practicum.filmorate.services.Recommender;
+import ru.yandex.practicum.filmorate.services.UserService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "filmorate.recommendations.engine=item-similarity")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ItemSimilarityRecommenderTest {
+    private static final int USERS = 30;
+    private static final int FILMS = 40;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final PopularityIndex popularityIndex;
+    private final ItemSimilarityRecommender recommender;
+    private final Recommender snapshotRecommender;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, ?)", FILMS);
+        popularityIndex.rebuild();
+        snapshotRecommender.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        popularityIndex.rebuild();
+        snapshotRecommender.rebuild();
+    }
+
+    @Test
+    public void recommendsFilmsLikedTogetherWithUsersFilms() {
+        // с фильмом 1 чаще всего лайкают фильм 2, реже - фильм 3
+        like(2, 1, 2, 3);
+        like(3, 1, 2, 3);
+        like(4, 1, 2);
+        like(5, 3);
+        like(6, 4);
+        like(1, 1, 4);
+
+        assertEquals(List.of(2, 3), getRecommendedIds(1, 10));
+        assertEquals(List.of(2), getRecommendedIds(1, 1));
+        assertEquals(List.of(1), getRecommendedIds(6, 10));
+        assertEquals(List.of(), getRecommendedIds(7, 10));
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        Random random = new Random(17);
+        Set<List<Integer>> likes = new HashSet<>();
+        for (int i = 0; i < 600; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            int filmId = 1 + random.nextInt(FILMS);
+            if (likes.remove(List.of(userId, filmId))) {
+                filmService.removeLikeFromUserById(filmId, userId);
+            } else {
+                likes.add(List.of(userId, filmId));
+                filmService.addLikeFromUserById(filmId, userId);
+            }
+        }
+        filmService.removeFilm(FILMS);
+        userService.removeUser(USERS);
+
+        List<Set<Integer>> incremental = recommendAll();
+        recommender.rebuild();
+        assertEquals(recommendAll(), incremental);
+    }
+
+    @Test
+    public void refreshReachesUsersOfCoLikedFilms() {
+        // у пользователя 3 один фильм 3, с ним одинаково часто лайкают фильмы 1 и 2
+        like(1, 1, 3);
+        like(2, 2, 3);
+        like(3, 3);
+        snapshotRecommender.refresh();
+        assertEquals(List.of(1), getRecommendedIds(3, 1));
+
+        // пользователь 4 не делит лайков с пользователем 3, но фильм 1 стал популярнее
+        // и его схожесть с фильмом 3 упала
+        like(4, 1);
+        snapshotRecommender.refresh();
+        assertEquals(List.of(2), getRecommendedIds(3, 1));
+
+        userService.removeUser(4);
+        snapshotRecommender.refresh();
+        assertEquals(List.of(1), getRecommendedIds(3, 1));
+
+        like(5, 1);
+        snapshotRecommender.refresh();
+        assertEquals(List.of(2), getRecommendedIds(3, 1));
+
+        filmService.removeFilm(2);
+        snapshotRecommender.refresh();
+        assertEquals(List.of(1), getRecommendedIds(3, 1));
+    }
+
+    private List<Set<Integer>> recommendAll() {
+        // порядок сложения оценок зависит от истории хеш-таблиц, поэтому сравниваются множества
+        List<Set<Integer>> result = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            result.add(new HashSet<>(recommender.recommend(userId, FILMS)));
+        }
+        return result;
+    }
+
+    private void like(int userId, Integer... filmIds) {
+        for (Integer filmId : filmIds) {
+            filmService.addLikeFromUserById(filmId, userId);
+        }
+    }
+
+    private List<Integer> getRecommendedIds(int userId, int count) {
+        return userService.getRecommendations(userId, count).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.models.Genre;
+import ru.yandex.practicum.filmorate.models.Mpa;
+import ru.yandex.practicum.filmorate.models.User;
+import ru.yandex.practicum.filmorate.services.FilmService;
+import ru.yandex.practicum.filmorate.services.PopularityIndex;
+import ru.yandex.practicum.filmorate.services.UserService;
+import ru.yandex.practicum.filmorate.storage.inMemory.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class PopularityIndexTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final PopularityIndex popularityIndex;
+
+    @BeforeEach
+    void setUp() {
+        popularityIndex.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM LIKES");
+        jdbcTemplate.update("DELETE FROM FILM_GENRES");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        popularityIndex.rebuild();
+    }
+
+    @Test
+    public void indexMatchesDataBaseAfterLikesAndUnlikes() {
+        addFilm("Маска", 1994, 1);
+        addFilm("Тупой и еще тупее", 1994, 1);
+        addFilm("Вечное сияние чистого разума", 2004, 2);
+        addUser("jim@email.com", "Jim");
+        addUser("jeff@email.com", "Jeff");
+        addUser("diaz@email.com", "Cameron");
+
+        filmService.addLikeFromUserById(2, 1);
+        filmService.addLikeFromUserById(2, 2);
+        filmService.addLikeFromUserById(2, 3);
+        filmService.addLikeFromUserById(3, 1);
+        filmService.addLikeFromUserById(3, 2);
+        filmService.addLikeFromUserById(1, 1);
+
+        assertEquals(List.of(2, 3, 1), getPopularIds(10, null, null));
+        assertEquals(List.of(2, 1), getPopularIds(10, 1, null));
+        assertEquals(List.of(3), getPopularIds(10, null, Year.of(2004)));
+        assertEquals(List.of(2), getPopularIds(1, 1, Year.of(1994)));
+        assertEquals(List.of(), getPopularIds(10, 2, Year.of(1994)));
+        assertConsistent();
+
+        filmService.removeLikeFromUserById(2, 1);
+        filmService.removeLikeFromUserById(2, 2);
+        //повторное удаление лайка не меняет рейтинг
+        filmService.removeLikeFromUserById(2, 2);
+
+        assertEquals(List.of(3, 1, 2), getPopularIds(10, null, null));
+        assertConsistent();
+
+        userService.removeUser(1);
+
+        assertEquals(List.of(2, 3, 1), getPopularIds(10, null, null));
+        assertConsistent();
+    }
+
+    @Test
+    public void updatedFilmKeepsLikesFromIndex() {
+        addFilm("Маска", 1994, 1);
+        addFilm("Тупой и еще тупее", 1994, 1);
+        addUser("jim@email.com", "Jim");
+        filmService.addLikeFromUserById(2, 1);
+
+        //лайки фильма прочитаны до лайка: счетчик в индексе не сбрасывается, меняются год и жанры
+        Film updated = filmService.getFilmById(2);
+        updated.setLikes(new HashSet<>());
+        updated.setReleaseDate(LocalDate.of(2004, 3, 9));
+        updated.setGenres(List.of(Genre.builder().id(2).name("Жанр").build()));
+        popularityIndex.put(updated);
+
+        assertEquals(List.of(2, 1), popularityIndex.getTopFilmIds(10, null, null));
+        assertEquals(List.of(2), popularityIndex.getTopFilmIds(10, 2, Year.of(2004)));
+        assertEquals(List.of(1), popularityIndex.getTopFilmIds(10, 1, Year.of(1994)));
+    }
+
+    @Test
+    public void likesDuringRebuildAreReplayed() {
+        AtomicReference<PopularityIndex> index = new AtomicReference<>();
+        InMemoryFilmStorage storage = new InMemoryFilmStorage() {
+            @Override
+            public List<Film> getFilms() {
+                List<Film> films = super.getFilms();
+                //лайк приходит, когда фильмы уже прочитаны
+                index.get().onLike(2);
+                return films;
+            }
+        };
+        storage.addFilm(film("Маска", 1994, 1));
+        storage.addFilm(film("Тупой и еще тупее", 1994, 1));
+        index.set(new PopularityIndex(storage));
+
+        index.get().rebuild();
+
+        assertEquals(List.of(2, 1), index.get().getTopFilmIds(10, null, null));
+    }
+
+    private void assertConsistent() {
+        Integer[] genreIds = {null, 1, 2, 3};
+        Year[] years = {null, Year.of(1994), Year.of(2004), Year.of(2022)};
+        for (Integer genreId : genreIds) {
+            for (Year year : years) {
+                assertTrue(filmService.checkPopularityIndexConsistency(10, genreId, year),
+                        "Индекс расходится с базой для жанра " + genreId + " и года " + year);
+            }
+        }
+    }
+
+    private List<Integer> getPopularIds(int count, Integer genreId, Year year) {
+        return filmService.getMostPopularFilmByCountLikes(count, genreId, year).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private void addFilm(String name, int year, int genreId) {
+        filmService.addFilm(film(name, year, genreId));
+    }
+
+    private Film film(String name, int year, int genreId) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(year, 3, 9))
+                .duration(101)
+                .mpa(Mpa.builder().id(2).name("PG").build())
+                .genres(List.of(Genre.builder().id(genreId).name("Жанр").build()))
+                .build();
+    }
+
+    private void addUser(String email, String login) {
+        userService.addUser(User.builder()
+                .email(email)
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1962, 1, 17))
+                .build());
+    }
+}
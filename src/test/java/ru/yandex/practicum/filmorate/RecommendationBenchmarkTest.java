@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.services.ItemSimilarityRecommender;
+import ru.yandex.practicum.filmorate.services.RecommendationEngine;
+import ru.yandex.practicum.filmorate.services.UserSimilarityRecommender;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Офлайн-оценка рекомендаций на синтетических лайках: пользователи разбиты на группы со своими
+ * любимыми фильмами, у каждого пользователя часть лайков откладывается и ищется в top-N.
+ * Оба движка сравниваются с рекомендацией самых популярных фильмов, замеряется задержка одного запроса.
+ * Запуск: mvn test -Dbenchmark=true -Dtest=RecommendationBenchmarkTest
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureTestDatabase
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class RecommendationBenchmarkTest {
+    private static final int USERS = 5_000;
+    private static final int FILMS = 2_000;
+    private static final int GROUPS = 20;
+    private static final int LIKES_PER_USER = 30;
+    private static final int HELD_OUT_PER_USER = 5;
+    private static final double IN_GROUP_SHARE = 0.8;
+    private static final int TOP_N = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM LIKES");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+    }
+
+    @Test
+    public void precisionRecallAndLatency() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, ?)", FILMS);
+
+        Random random = new Random(42);
+        Map<Integer, Set<Integer>> train = new HashMap<>();
+        Map<Integer, Set<Integer>> heldOut = new HashMap<>();
+        int groupSize = FILMS / GROUPS;
+        List<Object[]> trainLikes = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            int group = userId % GROUPS;
+            List<Integer> liked = new ArrayList<>(generateLikes(random, group, groupSize));
+            Collections.shuffle(liked, random);
+            heldOut.put(userId, new HashSet<>(liked.subList(0, HELD_OUT_PER_USER)));
+            Set<Integer> userTrain = new HashSet<>(liked.subList(HELD_OUT_PER_USER, liked.size()));
+            train.put(userId, userTrain);
+            for (Integer filmId : userTrain) {
+                trainLikes.add(new Object[]{userId, filmId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO likes(id_user, id_film) VALUES (?, ?)", trainLikes);
+
+        List<Integer> popular = getPopular(train);
+        int popularHits = 0;
+        for (int userId = 1; userId <= USERS; userId++) {
+            popularHits += countHits(topNotLiked(popular, train.get(userId)), heldOut.get(userId));
+        }
+        double popularPrecision = (double) popularHits / (USERS * TOP_N);
+        log.info("Самые популярные: precision@{} = {}, recall@{} = {}", TOP_N, popularPrecision, TOP_N,
+                (double) popularHits / (USERS * HELD_OUT_PER_USER));
+
+        double itemPrecision = evaluate("Схожесть фильмов", new ItemSimilarityRecommender(jdbcTemplate), heldOut);
+        double userPrecision = evaluate("Похожие пользователи", new UserSimilarityRecommender(jdbcTemplate, 50),
+                heldOut);
+
+        assertTrue(itemPrecision > popularPrecision, "Схожесть фильмов не лучше самых популярных фильмов");
+        assertTrue(userPrecision > popularPrecision, "Похожие пользователи не лучше самых популярных фильмов");
+    }
+
+    private double evaluate(String name, RecommendationEngine engine, Map<Integer, Set<Integer>> heldOut) {
+        long rebuildStart = System.nanoTime();
+        engine.rebuild();
+        long rebuildMillis = (System.nanoTime() - rebuildStart) / 1_000_000;
+
+        for (int userId = 1; userId <= USERS / 10; userId++) {
+            engine.recommend(userId, TOP_N);
+        }
+        long[] latencies = new long[USERS];
+        int hits = 0;
+        for (int userId = 1; userId <= USERS; userId++) {
+            long start = System.nanoTime();
+            List<Integer> recommended = engine.recommend(userId, TOP_N);
+            latencies[userId - 1] = System.nanoTime() - start;
+            hits += countHits(recommended, heldOut.get(userId));
+        }
+        Arrays.sort(latencies);
+
+        double precision = (double) hits / (USERS * TOP_N);
+        log.info("{}: перестроение {} мс, precision@{} = {}, recall@{} = {}, p50 = {} мкс, p99 = {} мкс",
+                name, rebuildMillis, TOP_N, precision, TOP_N, (double) hits / (USERS * HELD_OUT_PER_USER),
+                latencies[USERS / 2] / 1_000, latencies[USERS * 99 / 100] / 1_000);
+        return precision;
+    }
+
+    private static Set<Integer> generateLikes(Random random, int group, int groupSize) {
+        Set<Integer> liked = new HashSet<>();
+        while (liked.size() < LIKES_PER_USER) {
+            if (random.nextDouble() < IN_GROUP_SHARE) {
+                liked.add(1 + group * groupSize + random.nextInt(groupSize));
+            } else {
+                liked.add(1 + random.nextInt(FILMS));
+            }
+        }
+        return liked;
+    }
+
+    private static List<Integer> getPopular(Map<Integer, Set<Integer>> train) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Set<Integer> liked : train.values()) {
+            for (Integer filmId : liked) {
+                counts.merge(filmId, 1, Integer::sum);
+            }
+        }
+        List<Integer> popular = new ArrayList<>(counts.keySet());
+        popular.sort(Comparator.comparing((Integer filmId) -> counts.get(filmId)).reversed()
+                .thenComparing(filmId -> filmId));
+        return popular;
+    }
+
+    private static List<Integer> topNotLiked(List<Integer> popular, Set<Integer> liked) {
+        List<Integer> result = new ArrayList<>(TOP_N);
+        for (Integer filmId : popular) {
+            if (!liked.contains(filmId)) {
+                result.add(filmId);
+                if (result.size() == TOP_N) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int countHits(List<Integer> recommended, Set<Integer> relevant) {
+        int hits = 0;
+        for (Integer filmId : recommended) {
+            if (relevant.contains(filmId)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
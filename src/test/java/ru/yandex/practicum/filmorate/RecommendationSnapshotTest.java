@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.services.FilmService;
+import ru.yandex.practicum.filmorate.services.ItemSimilarityRecommender;
+import ru.yandex.practicum.filmorate.services.PopularityIndex;
+import ru.yandex.practicum.filmorate.services.Recommender;
+import ru.yandex.practicum.filmorate.services.UserService;
+import ru.yandex.practicum.filmorate.services.UserSimilarityRecommender;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class RecommendationSnapshotTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final PopularityIndex popularityIndex;
+    private final Recommender recommender;
+    private final MeterRegistry meterRegistry;
+    private final ItemSimilarityRecommender itemSimilarity;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 3)");
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, 5)");
+        popularityIndex.rebuild();
+        recommender.rebuild();
+        recommender.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        popularityIndex.rebuild();
+        recommender.rebuild();
+    }
+
+    @Test
+    public void snapshotIsServedUntilRefreshOfAffectedUsers() {
+        filmService.addLikeFromUserById(1, 1);
+        filmService.addLikeFromUserById(1, 2);
+        filmService.addLikeFromUserById(2, 2);
+        filmService.addLikeFromUserById(4, 3);
+        filmService.addLikeFromUserById(5, 3);
+        recommender.refresh();
+        assertEquals(0.0, getPendingUsers());
+
+        assertEquals(List.of(2), getRecommendedIds(1));
+        assertEquals(List.of(), getRecommendedIds(3));
+
+        // у пользователя 2 есть общий фильм с пользователем 1, но не с пользователем 3
+        filmService.addLikeFromUserById(3, 2);
+        assertEquals(1.0, getPendingUsers());
+        assertEquals(List.of(2), getRecommendedIds(1));
+
+        recommender.refresh();
+
+        assertEquals(0.0, getPendingUsers());
+        assertEquals(0.0, meterRegistry.get("filmorate.recommendations.staleness.seconds").gauge().value());
+        assertEquals(List.of(2, 3), getRecommendedIds(1));
+        assertEquals(List.of(), getRecommendedIds(2));
+        assertEquals(List.of(), getRecommendedIds(3));
+    }
+
+    @Test
+    public void snapshotComputedBeforeLikeIsNotPublished() {
+        jdbcTemplate.update("INSERT INTO likes(id_user, id_film) VALUES (1, 1), (2, 1), (2, 3)");
+        AtomicReference<Recommender> holder = new AtomicReference<>();
+        AtomicBoolean likeDuringRefresh = new AtomicBoolean(true);
+        UserSimilarityRecommender userSimilarity = new UserSimilarityRecommender(jdbcTemplate, 50) {
+            @Override
+            public List<Integer> recommend(int userId, int count) {
+                List<Integer> filmIds = super.recommend(userId, count);
+                //пользователь 1 лайкает фильм 3, пока для него считается снимок
+                if (userId == 1 && likeDuringRefresh.getAndSet(false)) {
+                    holder.get().onLike(1, 3);
+                }
+                return filmIds;
+            }
+        };
+        Recommender snapshotRecommender = new Recommender(userSimilarity, itemSimilarity, jdbcTemplate,
+                new SimpleMeterRegistry(), "user-similarity", 100);
+        holder.set(snapshotRecommender);
+        snapshotRecommender.rebuild();
+
+        snapshotRecommender.refresh();
+
+        assertEquals(List.of(), snapshotRecommender.recommend(1, 10));
+    }
+
+    private double getPendingUsers() {
+        return meterRegistry.get("filmorate.recommendations.pending.users").gauge().value();
+    }
+
+    private List<Integer> getRecommendedIds(int userId) {
+        return userService.getRecommendations(userId, 10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Review;
+import ru.yandex.practicum.filmorate.services.EventWriter;
+import ru.yandex.practicum.filmorate.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReviewCreateConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int REVIEWS_PER_THREAD = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReviewService reviewService;
+    private final EventWriter eventWriter;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", THREADS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "VALUES ('film', 'Описание', DATE '2000-01-01', 100, 0, 1)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventWriter.flush();
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE REVIEWS ALTER COLUMN REVIEW_ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
+    }
+
+    @Test
+    public void parallelCreatesReturnOwnReviews() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Review>>> futures = new ArrayList<>();
+        for (int t = 1; t <= THREADS; t++) {
+            int userId = t;
+            futures.add(executor.submit(() -> {
+                List<Review> created = new ArrayList<>();
+                for (int i = 0; i < REVIEWS_PER_THREAD; i++) {
+                    Review review = new Review();
+                    review.setUserId(userId);
+                    review.setFilmId(1);
+                    review.setContent("Отзыв " + userId + "-" + i);
+                    review.setIsPositive(i % 2 == 0);
+                    created.add(reviewService.create(review));
+                }
+                return created;
+            }));
+        }
+
+        Set<Long> reviewIds = new HashSet<>();
+        for (int t = 1; t <= THREADS; t++) {
+            List<Review> created = futures.get(t - 1).get();
+            for (int i = 0; i < REVIEWS_PER_THREAD; i++) {
+                Review review = created.get(i);
+                assertEquals("Отзыв " + t + "-" + i, review.getContent());
+                assertEquals(t, review.getUserId());
+                assertEquals(0L, review.getUseful());
+                assertEquals(review, reviewService.getByReviewId(review.getReviewId()));
+                reviewIds.add(review.getReviewId());
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(THREADS * REVIEWS_PER_THREAD, reviewIds.size());
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.controllers.ReviewController;
+import ru.yandex.practicum.filmorate.models.Review;
+import ru.yandex.practicum.filmorate.services.HotReviewCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReviewListingTest {
+    private static final int REVIEWS = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReviewController reviewController;
+    private final HotReviewCache hotReviewCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", REVIEWS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, 2)");
+        jdbcTemplate.update("INSERT INTO reviews(user_id, film_id, content, is_positive, useful) " +
+                "SELECT X, MOD(X, 2) + 1, 'Отзыв', TRUE, MOD(X * 7, 4) - 1 FROM SYSTEM_RANGE(1, ?)", REVIEWS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hotReviewCache.clear();
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE REVIEWS ALTER COLUMN REVIEW_ID RESTART WITH 1");
+    }
+
+    @Test
+    public void pagesCoverAllReviewsInUsefulOrder() {
+        assertEquals(jdbcTemplate.queryForList("SELECT review_id FROM reviews " +
+                        "WHERE film_id = 1 ORDER BY useful DESC, review_id", Long.class),
+                readAllPages(1));
+        assertEquals(jdbcTemplate.queryForList("SELECT review_id FROM reviews " +
+                        "ORDER BY useful DESC, review_id", Long.class),
+                readAllPages(null));
+    }
+
+    @Test
+    public void lastPageHasNoCursor() {
+        ResponseEntity<List<Review>> response = reviewController.getReviewsByParams(2, REVIEWS, null);
+
+        assertEquals(REVIEWS / 2, response.getBody().size());
+        assertNull(response.getHeaders().getFirst("X-Next-Cursor"));
+    }
+
+    private List<Long> readAllPages(Integer filmId) {
+        List<Long> reviewIds = new ArrayList<>();
+        String after = null;
+        do {
+            ResponseEntity<List<Review>> response = reviewController.getReviewsByParams(filmId, 3, after);
+            reviewIds.addAll(response.getBody().stream().map(Review::getReviewId).collect(Collectors.toList()));
+            after = response.getHeaders().getFirst("X-Next-Cursor");
+        } while (after != null);
+        return reviewIds;
+    }
+}
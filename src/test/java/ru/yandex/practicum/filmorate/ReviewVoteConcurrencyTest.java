@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exceptions.EmptyResultFromDataBaseException;
+import ru.yandex.practicum.filmorate.models.Review;
+import ru.yandex.practicum.filmorate.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReviewVoteConcurrencyTest {
+    private static final int USERS = 100;
+    private static final int REPEATS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReviewService reviewService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "VALUES ('film', 'Описание', DATE '2000-01-01', 100, 0, 1)");
+        jdbcTemplate.update("INSERT INTO reviews(user_id, film_id, content, is_positive, useful) " +
+                "VALUES (1, 1, 'Отзыв', TRUE, 0)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM EVENTS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE REVIEWS ALTER COLUMN REVIEW_ID RESTART WITH 1");
+    }
+
+    @Test
+    public void parallelVotesKeepUsefulConsistent() throws Exception {
+        Map<Integer, Integer> expectedVotes = new HashMap<>();
+        List<Callable<Void>> firstRound = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            boolean like = userId % 3 != 0;
+            expectedVotes.put(userId, like ? 1 : -1);
+            for (int i = 0; i < REPEATS; i++) {
+                firstRound.add(vote(userId, like));
+            }
+        }
+        runInParallel(firstRound);
+        assertUseful(expectedVotes);
+
+        List<Callable<Void>> secondRound = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            int current = expectedVotes.get(userId);
+            if (userId % 5 == 0) {
+                expectedVotes.put(userId, -current);
+                for (int i = 0; i < REPEATS; i++) {
+                    secondRound.add(vote(userId, current < 0));
+                }
+            } else if (userId % 7 == 0) {
+                expectedVotes.remove(userId);
+                for (int i = 0; i < REPEATS; i++) {
+                    secondRound.add(removeVote(userId, current > 0));
+                }
+            }
+        }
+        runInParallel(secondRound);
+        assertUseful(expectedVotes);
+    }
+
+    @Test
+    public void voteForMissingUserOrReviewIsNotFound() {
+        EmptyResultFromDataBaseException e = assertThrows(EmptyResultFromDataBaseException.class,
+                () -> reviewService.addLikeToReview(1, USERS + 1));
+        assertEquals("Пользователь с идентификатором " + (USERS + 1) + " отсутствует", e.getMessage());
+
+        assertThrows(EmptyResultFromDataBaseException.class, () -> reviewService.addDisLikeToReview(2, 1));
+        assertEquals(0L, reviewService.getByReviewId(1L).getUseful());
+    }
+
+    @Test
+    public void reviewForMissingFilmOrUserIsNotFound() {
+        Review review = new Review();
+        review.setUserId(1);
+        review.setFilmId(2);
+        review.setContent("Отзыв");
+        review.setIsPositive(true);
+        EmptyResultFromDataBaseException e = assertThrows(EmptyResultFromDataBaseException.class,
+                () -> reviewService.create(review));
+        assertEquals("Фильм с идентификатором 2 отсутствует", e.getMessage());
+
+        review.setUserId(USERS + 1);
+        review.setFilmId(1);
+        e = assertThrows(EmptyResultFromDataBaseException.class, () -> reviewService.create(review));
+        assertEquals("Пользователь с идентификатором " + (USERS + 1) + " отсутствует", e.getMessage());
+    }
+
+    private void assertUseful(Map<Integer, Integer> expectedVotes) {
+        int expected = expectedVotes.values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(expected, reviewService.getByReviewId(1L).getUseful());
+        assertEquals(expectedVotes.size(),
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM review_votes", Integer.class));
+        assertEquals(expected,
+                jdbcTemplate.queryForObject("SELECT COALESCE(SUM(vote), 0) FROM review_votes", Integer.class));
+    }
+
+    private Callable<Void> vote(int userId, boolean like) {
+        return () -> {
+            if (like) {
+                reviewService.addLikeToReview(1, userId);
+            } else {
+                reviewService.addDisLikeToReview(1, userId);
+            }
+            return null;
+        };
+    }
+
+    private Callable<Void> removeVote(int userId, boolean like) {
+        return () -> {
+            if (like) {
+                reviewService.removeLikeFromReview(1, userId);
+            } else {
+                reviewService.removeDisLikeFromReview(1, userId);
+            }
+            return null;
+        };
+    }
+
+    private static void runInParallel(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.User;
+import ru.yandex.practicum.filmorate.services.SocialGraph;
+import ru.yandex.practicum.filmorate.services.UserService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class SocialGraphTest {
+    private static final int USERS = 7;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserService userService;
+    private final SocialGraph socialGraph;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        socialGraph.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        socialGraph.rebuild();
+    }
+
+    @Test
+    public void commonFriendsAndSuggestionsFollowFriendChanges() {
+        userService.addFriend(1, 2);
+        userService.addFriend(1, 3);
+        userService.addFriend(2, 3);
+        userService.addFriend(2, 4);
+        userService.addFriend(2, 5);
+        userService.addFriend(3, 5);
+        userService.addFriend(3, 6);
+        userService.addFriend(4, 1);
+
+        assertEquals(Set.of(2, 3), getIds(userService.getFriendsById(1)));
+        assertEquals(Set.of(3), getIds(userService.getCommonFriends(1, 2)));
+        assertEquals(Set.of(), getIds(userService.getCommonFriends(1, 7)));
+        // 5 - общий у 2 и 3, 4 и 6 - по одному общему, 1 и 3 уже не предлагаются
+        assertEquals(List.of(5, 4, 6), getIdList(userService.suggestFriends(1, 10)));
+        assertEquals(List.of(5), getIdList(userService.suggestFriends(1, 1)));
+        assertEquals(Set.of(3, 4, 5), userService.getFriendsById(1).stream()
+                .filter(user -> user.getId() == 2)
+                .findFirst()
+                .orElseThrow()
+                .getFriends());
+
+        userService.removeFriend(2, 5);
+        userService.removeUser(6);
+
+        assertEquals(List.of(4, 5), getIdList(userService.suggestFriends(1, 10)));
+        assertArrayEquals(new int[]{5}, socialGraph.getFriendIds(3));
+
+        int[][] incremental = getAllFriendIds();
+        socialGraph.rebuild();
+        for (int userId = 1; userId <= USERS; userId++) {
+            assertArrayEquals(getAllFriendIds()[userId - 1], incremental[userId - 1],
+                    "Друзья пользователя " + userId + ": " + Arrays.toString(incremental[userId - 1]));
+        }
+    }
+
+    private int[][] getAllFriendIds() {
+        int[][] result = new int[USERS][];
+        for (int userId = 1; userId <= USERS; userId++) {
+            result[userId - 1] = socialGraph.getFriendIds(userId);
+        }
+        return result;
+    }
+
+    private static Set<Integer> getIds(Set<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toSet());
+    }
+
+    private static List<Integer> getIdList(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+}
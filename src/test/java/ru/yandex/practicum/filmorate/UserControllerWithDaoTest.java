@@ -9,7 +9,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.models.Event;
 import ru.yandex.practicum.filmorate.models.User;
+import ru.yandex.practicum.filmorate.storage.daoImpl.DaoEventStorage;
 import ru.yandex.practicum.filmorate.storage.daoImpl.DaoUserStorage;
 
 import java.time.LocalDate;
@@ -27,6 +29,7 @@ public class UserControllerWithDaoTest {
 
     private final JdbcTemplate jdbcTemplate;
     private final DaoUserStorage userStorage;
+    private final DaoEventStorage eventStorage;
     User firstUser;
     User secondUser;
     User thirdUser;
@@ -38,8 +41,10 @@ public class UserControllerWithDaoTest {
         jdbcTemplate.update("DELETE FROM LIKES");
         jdbcTemplate.update("DELETE FROM USERS_FRIENDS");
         jdbcTemplate.update("DELETE FROM FILM_GENRES");
+        jdbcTemplate.update("DELETE FROM EVENTS");
         jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
         jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE EVENTS ALTER COLUMN EVENT_ID RESTART WITH 1");
     }
 
     @Test
@@ -136,6 +141,60 @@ public class UserControllerWithDaoTest {
         assertEquals(2,userStorage.getUsers().size());
     }
 
+    @Test
+    public void getUsersPageTest() {
+        for (int i = 1; i <= 5; i++) {
+            userStorage.addUser(User.builder()
+                    .email("user" + i + "@email.com")
+                    .login("user" + i)
+                    .name("Пользователь " + i)
+                    .birthday(LocalDate.of(1990, 1, i))
+                    .build());
+        }
+
+        assertEquals(List.of(1, 2), getUserIds(userStorage.getUsers(0, 2)));
+        assertEquals(List.of(3, 4), getUserIds(userStorage.getUsers(2, 2)));
+        assertEquals(List.of(5), getUserIds(userStorage.getUsers(4, 2)));
+        assertEquals(List.of(), getUserIds(userStorage.getUsers(5, 2)));
+    }
+
+    @Test
+    public void getFeedPageTest() {
+        for (int i = 1; i <= 3; i++) {
+            userStorage.addUser(User.builder()
+                    .email("user" + i + "@email.com")
+                    .login("user" + i)
+                    .name("Пользователь " + i)
+                    .birthday(LocalDate.of(1990, 1, i))
+                    .build());
+        }
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(1, 3);
+        // события 1..9 чередуются между пользователями 2 и 3, событие 10 - самого пользователя 1
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            events.add(eventStorage.makeEvent(i % 2 == 0 ? 2L : 3L, i, "LIKE", "ADD"));
+        }
+        events.add(eventStorage.makeEvent(1L, 10, "LIKE", "ADD"));
+        eventStorage.saveAll(events);
+
+        assertEquals(List.of(2L, 4L, 6L, 8L), getEventIds(eventStorage.getFeed(2L, null, 10)));
+        assertEquals(List.of(6L, 8L), getEventIds(eventStorage.getFeed(2L, null, 2)));
+        assertEquals(List.of(2L, 4L), getEventIds(eventStorage.getFeed(2L, 6L, 2)));
+        assertEquals(List.of(7L, 8L, 9L), getEventIds(eventStorage.getFriendsFeed(1L, null, 3)));
+        assertEquals(List.of(4L, 5L, 6L), getEventIds(eventStorage.getFriendsFeed(1L, 7L, 3)));
+        assertEquals(List.of(1L, 2L, 3L), getEventIds(eventStorage.getFriendsFeed(1L, 4L, 3)));
+        assertEquals(List.of(), getEventIds(eventStorage.getFriendsFeed(1L, 1L, 3)));
+    }
+
+    private static List<Long> getEventIds(List<Event> events) {
+        return events.stream().map(Event::getEventId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> getUserIds(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
     @Test
     public void addUserWithNullNameTest() {
         firstUser = User.builder()
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.models.Film;
+import ru.yandex.practicum.filmorate.services.FilmService;
+import ru.yandex.practicum.filmorate.services.PopularityIndex;
+import ru.yandex.practicum.filmorate.services.UserService;
+import ru.yandex.practicum.filmorate.services.UserSimilarityRecommender;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class UserSimilarityRecommenderTest {
+    private static final int USERS = 30;
+    private static final int FILMS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final PopularityIndex popularityIndex;
+    private final UserSimilarityRecommender recommender;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users(name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films(name, description, release_date, duration, rate, mpa) " +
+                "SELECT 'film' || X, 'Описание', DATE '2000-01-01', 100, 0, 1 FROM SYSTEM_RANGE(1, ?)", FILMS);
+        popularityIndex.rebuild();
+        recommender.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("ALTER TABLE USERS ALTER COLUMN ID RESTART WITH 1");
+        jdbcTemplate.update("ALTER TABLE FILMS ALTER COLUMN ID RESTART WITH 1");
+        popularityIndex.rebuild();
+        recommender.rebuild();
+    }
+
+    @Test
+    public void recommendsFilmsLikedTogetherWithUsersFilms() {
+        // у ближайших соседей пользователя 1 (2, 3 и 4) чаще всего лайкнут фильм 2, реже - фильм 3
+        like(2, 1, 2, 3);
+        like(3, 1, 2, 3);
+        like(4, 1, 2);
+        like(5, 3);
+        like(6, 4);
+        like(1, 1, 4);
+
+        assertEquals(List.of(2, 3), getRecommendedIds(1, 10));
+        assertEquals(List.of(2), getRecommendedIds(1, 1));
+        assertEquals(List.of(1), getRecommendedIds(6, 10));
+        assertEquals(List.of(), getRecommendedIds(7, 10));
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        Random random = new Random(17);
+        Set<List<Integer>> likes = new HashSet<>();
+        for (int i = 0; i < 1500; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            int filmId = 1 + random.nextInt(FILMS);
+            if (likes.remove(List.of(userId, filmId))) {
+                filmService.removeLikeFromUserById(filmId, userId);
+            } else {
+                likes.add(List.of(userId, filmId));
+                filmService.addLikeFromUserById(filmId, userId);
+            }
+        }
+        filmService.removeFilm(FILMS);
+        userService.removeUser(USERS);
+
+        List<Set<Integer>> incremental = recommendAll();
+        recommender.rebuild();
+        assertEquals(recommendAll(), incremental);
+    }
+
+    private List<Set<Integer>> recommendAll() {
+        // порядок сложения оценок зависит от истории хеш-таблиц, поэтому сравниваются множества
+        List<Set<Integer>> result = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            result.add(new HashSet<>(recommender.recommend(userId, FILMS)));
+        }
+        return result;
+    }
+
+    private void like(int userId, Integer... filmIds) {
+        for (Integer filmId : filmIds) {
+            filmService.addLikeFromUserById(filmId, userId);
+        }
+    }
+
+    private List<Integer> getRecommendedIds(int userId, int count) {
+        return userService.getRecommendations(userId, count).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+}